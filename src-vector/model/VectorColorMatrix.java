@@ -0,0 +1,112 @@
+package model;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * This class multiplies colors with a color matrix several pixels at a time, with the SIMD
+ * instructions of the processor (through the incubating Vector API). It's kept out of the main
+ * sources, so only a build that adds the jdk.incubator.vector module compiles it, and it's only
+ * loaded when that module is present; see {@link ColorMatrix}.
+ *
+ * <p>
+ * A row is worked on in chunks. The colors of a chunk are first widened to doubles in plain loops
+ * (which the JIT vectorizes by itself, and which is much faster than the lane conversions of the
+ * Vector API on Java 17), then multiplied with the matrix in vectors, and finally narrowed back.
+ * The sums are computed in doubles, in the same order as {@link ScalarColorMatrix}, so they come
+ * out exactly the same. Rounding is done by clamping the sum to [0, 255] first and then truncating
+ * sum + 0.5, which is what rounding and clamping give for every value in that range.
+ * </p>
+ */
+final class VectorColorMatrix implements IColorMatrixBackend {
+
+  /**
+   * The widest double vectors the processor has.
+   */
+  private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+
+  /**
+   * The number of pixels worked on at a time, small enough for the chunk to stay in the cache.
+   */
+  private static final int CHUNK = 512;
+
+  /**
+   * Scratch buffers for the current thread: the old red, green and blue of a chunk as doubles,
+   * followed by the new ones.
+   */
+  private static final ThreadLocal<double[][]> SCRATCH =
+      ThreadLocal.withInitial(() -> new double[6][CHUNK]);
+
+  @Override
+  public void apply(double[] matrix, int[] red, int[] green, int[] blue, int length) {
+    double[][] scratch = SCRATCH.get();
+    double[] r = scratch[0];
+    double[] g = scratch[1];
+    double[] b = scratch[2];
+    double[] newRed = scratch[3];
+    double[] newGreen = scratch[4];
+    double[] newBlue = scratch[5];
+    int lanes = DOUBLES.length();
+
+    for (int start = 0; start < length; start += CHUNK) {
+      int count = Math.min(CHUNK, length - start);
+      for (int j = 0; j < count; j++) {
+        r[j] = red[start + j];
+        g[j] = green[start + j];
+        b[j] = blue[start + j];
+      }
+
+      int end = count - count % lanes;
+      for (int j = 0; j < end; j += lanes) {
+        DoubleVector vr = DoubleVector.fromArray(DOUBLES, r, j);
+        DoubleVector vg = DoubleVector.fromArray(DOUBLES, g, j);
+        DoubleVector vb = DoubleVector.fromArray(DOUBLES, b, j);
+        combine(vr, vg, vb, matrix, 0).intoArray(newRed, j);
+        combine(vr, vg, vb, matrix, 3).intoArray(newGreen, j);
+        combine(vr, vg, vb, matrix, 6).intoArray(newBlue, j);
+      }
+      for (int j = end; j < count; j++) {
+        newRed[j] = combine(r[j], g[j], b[j], matrix, 0);
+        newGreen[j] = combine(r[j], g[j], b[j], matrix, 3);
+        newBlue[j] = combine(r[j], g[j], b[j], matrix, 6);
+      }
+
+      for (int j = 0; j < count; j++) {
+        red[start + j] = (int) newRed[j];
+        green[start + j] = (int) newGreen[j];
+        blue[start + j] = (int) newBlue[j];
+      }
+    }
+  }
+
+  /**
+   * This helper method computes one new color for every lane, from one row of the matrix.
+   *
+   * @param r      The red values.
+   * @param g      The green values.
+   * @param b      The blue values.
+   * @param matrix The matrix, row by row.
+   * @param row    The index of the first value of the row of the matrix.
+   * @return The new color, clamped to [0, 255] and plus 0.5, ready to be truncated.
+   */
+  private static DoubleVector combine(DoubleVector r, DoubleVector g, DoubleVector b,
+                                      double[] matrix, int row) {
+    DoubleVector sum = r.mul(matrix[row]).add(g.mul(matrix[row + 1])).add(b.mul(matrix[row + 2]));
+    return sum.max(0).min(255).add(0.5);
+  }
+
+  /**
+   * This helper method computes one new color for one pixel, the same way as the vector version.
+   *
+   * @param r      The red value.
+   * @param g      The green value.
+   * @param b      The blue value.
+   * @param matrix The matrix, row by row.
+   * @param row    The index of the first value of the row of the matrix.
+   * @return The new color, clamped to [0, 255] and plus 0.5, ready to be truncated.
+   */
+  private static double combine(double r, double g, double b, double[] matrix, int row) {
+    double sum = r * matrix[row] + g * matrix[row + 1] + b * matrix[row + 2];
+    return Math.min(Math.max(sum, 0), 255) + 0.5;
+  }
+}
@@ -4,6 +4,7 @@ import java.io.IOException;
 import controller.Controller;
 import controller.ViewController;
 import model.ModelImpl;
+import model.StorageMode;
 import view.View;
 
 /**
@@ -27,12 +28,21 @@ public class Main {
       ModelImpl model = new ModelImpl();
       ViewController controller = new ViewController(model, view);
     } else if (args[0].equals("-script")) {
-      if (args.length != 2) {
+      if (args.length != 2 && !(args.length == 4 && args[2].equals("-storage"))) {
         System.out.println("Invalid command -- Please try again");
         return;
       }
+      StorageMode mode = StorageMode.PACKED;
+      if (args.length == 4) {
+        try {
+          mode = StorageMode.valueOf(args[3].toUpperCase());
+        } catch (IllegalArgumentException e) {
+          System.out.println("Invalid storage mode -- Please try again");
+          return;
+        }
+      }
       try {
-        Controller controller = new Controller(new FileInputStream(args[1]), new ModelImpl());
+        Controller controller = new Controller(new FileInputStream(args[1]), new ModelImpl(mode));
         controller.controllerGo();
       } catch (IOException e) {
         System.out.println(e.getMessage() + ": Could not load the input.");
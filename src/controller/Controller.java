@@ -1,13 +1,17 @@
 package controller;
 
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Scanner;
+import java.util.Set;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
+import model.BorderMode;
 import model.IModel;
 
 /**
@@ -18,6 +22,22 @@ import model.IModel;
  */
 public class Controller implements IController {
 
+  /**
+   * The tone adjustments, which take one or more numbers.
+   */
+  private static final Set<String> TONES =
+          Set.of("brightness", "contrast", "gamma", "levels", "curves");
+
+  /**
+   * The number of rounds of refining superpixels when none is given.
+   */
+  private static final int SUPERPIXEL_ITERATIONS = 10;
+
+  /**
+   * The compactness of superpixels when none is given.
+   */
+  private static final double SUPERPIXEL_COMPACTNESS = 100;
+
   /**
    * The user's input. The commands to parse for the program to execute.
    */
@@ -72,6 +92,10 @@ public class Controller implements IController {
    *   or this:
    *     apply        blur
    *   [command] [specifications]
+   *
+   *   or this:
+   *     set      fixedpoint    on
+   *   [command]  [setting]   [value]
    * </pre></p>
    *
    * @throws IllegalArgumentException if the command is invalid. A command is invalid if there are
@@ -126,6 +150,16 @@ public class Controller implements IController {
                     + "please provide a filter to apply");
           }
 
+          break;
+        case "flush":
+          model.flush();
+          break;
+        case "set":
+          try {
+            executeSet(lineParser.next(), lineParser);
+          } catch (NoSuchElementException e) {
+            throw new IllegalArgumentException("Please provide a setting and its value.");
+          }
           break;
         default:
           throw new IllegalArgumentException("Improper command: " + command);
@@ -238,10 +272,23 @@ public class Controller implements IController {
    *
    * <p><pre>
    *   apply blur
+   *   apply blur 8
    *   apply mosaic 1000
+   *   apply mosaic 1000 seed 42
+   *   apply mosaic 1000 slic 10 100
+   *   apply kernel 3 3 0 -1 0 -1 5 -1 0 -1 0
+   *   apply dither color serpentine
+   *   apply dither ordered 8
+   *   apply quantize 16 dither
+   *   apply brightness 20
+   *   apply levels 16 235 1.2
    *
-   *   Each filter takes no arguments except for mosaic which takes exactly one (the amount of
-   *   seeds desired).
+   *   Each filter takes no arguments except for mosaic which takes the amount of seeds desired
+   *   and may take a random seed or the superpixel options, blur which may take a radius,
+   *   dither which may take the options described in executeDither, quantize which takes the
+   *   number of colors and may take dither, and kernel which takes the number of rows and
+   *   columns followed by the weights row by row. The tone adjustments (brightness, contrast,
+   *   gamma, levels and curves) take the numbers described in executeTone.
    * </pre></p>
    *
    * @param filter  the filter to be applied.
@@ -251,14 +298,373 @@ public class Controller implements IController {
    */
   private void executeApply(String filter, Scanner scanner) throws IllegalArgumentException {
     if (filter.equals("mosaic")) {
+      executeMosaic(scanner);
+    } else if (filter.equals("blur") && scanner.hasNext()) {
       try {
-        oneArgFilters.get("mosaic").accept(Integer.parseInt(scanner.next()));
+        int radius = Integer.parseInt(scanner.next());
+        if (scanner.hasNext()) {
+          throw new IllegalArgumentException("Too many arguments.");
+        }
+        model.blur(radius);
       } catch (NumberFormatException e) {
-        throw new IllegalArgumentException("Seeds were not entered as a number");
+        throw new IllegalArgumentException("Blur radius was not entered as a number");
       }
+    } else if (filter.equals("dither") && scanner.hasNext()) {
+      executeDither(scanner);
+    } else if (filter.equals("quantize")) {
+      executeQuantize(scanner);
+    } else if (filter.equals("kernel")) {
+      executeKernel(scanner);
+    } else if (TONES.contains(filter)) {
+      executeTone(filter, scanner);
     } else {
       noArgFilters.get(filter).run();
     }
   }
-}
 
+  /**
+   * This parses the amount of seeds of a mosaic, and the value the random generator starts from if
+   * it's given as "seed n", and applies it. The same random seed always gives the same mosaic.
+   *
+   * @param scanner the scanner parsing the current command line.
+   * @throws IllegalArgumentException if a number is missing or not a number, or if there are
+   *                                  other arguments.
+   */
+  private void executeMosaic(Scanner scanner) throws IllegalArgumentException {
+    int seeds;
+    try {
+      seeds = Integer.parseInt(scanner.next());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Seeds were not entered as a number");
+    }
+    if (!scanner.hasNext()) {
+      oneArgFilters.get("mosaic").accept(seeds);
+      return;
+    }
+    String option = scanner.next();
+    if (option.equalsIgnoreCase("slic")) {
+      executeSuperpixels(seeds, scanner);
+      return;
+    }
+    if (!option.equalsIgnoreCase("seed")) {
+      throw new IllegalArgumentException("Too many arguments.");
+    }
+    long randomSeed;
+    try {
+      randomSeed = Long.parseLong(scanner.next());
+    } catch (NumberFormatException | NoSuchElementException e) {
+      throw new IllegalArgumentException("Please provide the random seed as a number");
+    }
+    if (scanner.hasNext()) {
+      throw new IllegalArgumentException("Too many arguments.");
+    }
+    model.mosaic(seeds, randomSeed);
+  }
+
+  /**
+   * This parses the rest of a superpixel mosaic, "apply mosaic n slic [iterations [compactness]]",
+   * and applies it. The iterations default to 10 and the compactness to 100.
+   *
+   * @param count   the number of cells wanted.
+   * @param scanner the scanner parsing the current command line.
+   * @throws IllegalArgumentException if a value is not a number or out of range, or if there are
+   *                                  other arguments.
+   */
+  private void executeSuperpixels(int count, Scanner scanner) throws IllegalArgumentException {
+    int iterations = SUPERPIXEL_ITERATIONS;
+    double compactness = SUPERPIXEL_COMPACTNESS;
+    try {
+      if (scanner.hasNext()) {
+        iterations = Integer.parseInt(scanner.next());
+      }
+      if (scanner.hasNext()) {
+        compactness = Double.parseDouble(scanner.next());
+      }
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Please provide the iterations and compactness of "
+              + "superpixels as numbers");
+    }
+    if (scanner.hasNext()) {
+      throw new IllegalArgumentException("Too many arguments.");
+    }
+    model.superpixels(count, iterations, compactness);
+  }
+
+  /**
+   * This parses the options of a dither and applies it. Error diffusion takes options in any
+   * order, and the threshold maps take the rest of the line:
+   *
+   * <p><pre>
+   *   color        - every color is dithered on its own into 0 or 255, instead of the image
+   *                  turning black and white.
+   *   serpentine   - every other row is worked on from right to left.
+   *   ordered n    - black and white with an n x n Bayer map (n = 2, 4, 8, 16, 32 or 64).
+   *   bluenoise    - black and white with a blue-noise map.
+   * </pre></p>
+   *
+   * @param scanner the scanner parsing the current command line.
+   * @throws IllegalArgumentException if an option is unknown or given twice, or if the size of an
+   *                                  ordered dither is missing or invalid.
+   */
+  private void executeDither(Scanner scanner) throws IllegalArgumentException {
+    boolean color = false;
+    boolean serpentine = false;
+    boolean first = true;
+    while (scanner.hasNext()) {
+      String option = scanner.next().toLowerCase();
+      if (first && option.equals("ordered")) {
+        int size;
+        try {
+          size = Integer.parseInt(scanner.next());
+        } catch (NumberFormatException | NoSuchElementException e) {
+          throw new IllegalArgumentException("Please provide the size of the ordered dither as a "
+                  + "number");
+        }
+        if (scanner.hasNext()) {
+          throw new IllegalArgumentException("Too many arguments.");
+        }
+        model.ditherOrdered(size);
+        return;
+      } else if (first && option.equals("bluenoise")) {
+        if (scanner.hasNext()) {
+          throw new IllegalArgumentException("Too many arguments.");
+        }
+        model.ditherBlueNoise();
+        return;
+      } else if (option.equals("color") && !color) {
+        color = true;
+      } else if (option.equals("serpentine") && !serpentine) {
+        serpentine = true;
+      } else {
+        throw new IllegalArgumentException("Unknown dither option: " + option);
+      }
+      first = false;
+    }
+    model.dither(color, serpentine);
+  }
+
+  /**
+   * This parses a quantization and applies it: the number of colors (1 to 256), optionally
+   * followed by dither to spread the error of every pixel to the pixels around it. For example:
+   *
+   * <p><pre>
+   *   apply quantize 256
+   *   apply quantize 16 dither
+   * </pre></p>
+   *
+   * @param scanner the scanner parsing the current command line.
+   * @throws IllegalArgumentException if the number of colors is missing, not a number or out of
+   *                                  range, or if there are unknown arguments.
+   */
+  private void executeQuantize(Scanner scanner) throws IllegalArgumentException {
+    int colors;
+    try {
+      colors = Integer.parseInt(scanner.next());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("The number of colors was not entered as a number");
+    }
+    boolean dither = false;
+    if (scanner.hasNext()) {
+      if (!scanner.next().equalsIgnoreCase("dither") || scanner.hasNext()) {
+        throw new IllegalArgumentException("Too many arguments.");
+      }
+      dither = true;
+    }
+    model.quantize(colors, dither);
+  }
+
+  /**
+   * This parses a custom kernel and applies it. The kernel is given as its number of rows and
+   * columns followed by exactly rows * cols weights, row by row. It may be followed by the border
+   * mode, which decides what the kernel sees past the edges of the image (zero, clamp, reflect or
+   * wrap; zero if left out). For example:
+   *
+   * <p><pre>
+   *   apply kernel 3 3 0 -1 0 -1 5 -1 0 -1 0
+   *   apply kernel 1 5 0.2 0.2 0.2 0.2 0.2 border clamp
+   * </pre></p>
+   *
+   * @param scanner the scanner parsing the current command line.
+   * @throws IllegalArgumentException if the size or a weight is not a number, if the kernel is too
+   *                                  large, if there are too few or too many weights, or if the
+   *                                  border mode is unknown.
+   */
+  private void executeKernel(Scanner scanner) throws IllegalArgumentException {
+    int rows;
+    int cols;
+    try {
+      rows = Integer.parseInt(scanner.next());
+      cols = Integer.parseInt(scanner.next());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Kernel size was not entered as a number");
+    }
+    if (rows < 1 || cols < 1) {
+      throw new IllegalArgumentException("Kernel size must be positive");
+    }
+    int size;
+    try {
+      size = Math.multiplyExact(rows, cols);
+    } catch (ArithmeticException e) {
+      throw new IllegalArgumentException("Kernel size is too large");
+    }
+
+    double[] values = new double[size];
+    for (int i = 0; i < values.length; i++) {
+      if (!scanner.hasNext()) {
+        throw new IllegalArgumentException("A " + rows + "x" + cols + " kernel needs "
+                + values.length + " values");
+      }
+      try {
+        values[i] = Double.parseDouble(scanner.next());
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Kernel values were not entered as numbers");
+      }
+    }
+
+    BorderMode border = BorderMode.ZERO;
+    if (scanner.hasNext()) {
+      if (!scanner.next().equals("border") || !scanner.hasNext()) {
+        throw new IllegalArgumentException("Too many kernel values");
+      }
+      try {
+        border = BorderMode.valueOf(scanner.next().toUpperCase());
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("Unknown border mode");
+      }
+      if (scanner.hasNext()) {
+        throw new IllegalArgumentException("Too many arguments.");
+      }
+    }
+
+    model.applyKernel(rows, cols, values, border);
+  }
+
+  /**
+   * This parses a tone adjustment and applies it. The adjustments and their numbers are:
+   *
+   * <p><pre>
+   *   apply brightness 20              - the amount added to every color, from -255 to 255.
+   *   apply contrast 1.5               - how much colors are stretched away from gray (1 is none).
+   *   apply gamma 2.2                  - the gamma; above 1 brightens the mid tones.
+   *   apply levels 16 235              - the values that become black and white, optionally
+   *   apply levels 16 235 1.2            followed by a gamma.
+   *   apply curves 0 0 64 48 255 255   - the input and output of each point of the curve.
+   * </pre></p>
+   *
+   * @param tone    the tone adjustment to apply.
+   * @param scanner the scanner parsing the current command line.
+   * @throws IllegalArgumentException if a number is missing, is not a number, or is out of range,
+   *                                  or if there are too many numbers.
+   */
+  private void executeTone(String tone, Scanner scanner) throws IllegalArgumentException {
+    List<Double> numbers = new ArrayList<>();
+    while (scanner.hasNext()) {
+      try {
+        numbers.add(Double.parseDouble(scanner.next()));
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("The values of " + tone
+                + " were not entered as numbers");
+      }
+    }
+
+    switch (tone) {
+      case "brightness":
+        checkCount(tone, numbers, 1, 1);
+        model.brightness(toInt(numbers.get(0)));
+        break;
+      case "contrast":
+        checkCount(tone, numbers, 1, 1);
+        model.contrast(numbers.get(0));
+        break;
+      case "gamma":
+        checkCount(tone, numbers, 1, 1);
+        model.gamma(numbers.get(0));
+        break;
+      case "levels":
+        checkCount(tone, numbers, 2, 3);
+        model.levels(toInt(numbers.get(0)), toInt(numbers.get(1)),
+                numbers.size() == 3 ? numbers.get(2) : 1);
+        break;
+      default:
+        if (numbers.isEmpty() || numbers.size() % 2 != 0) {
+          throw new IllegalArgumentException("A curve needs an input and an output for each point");
+        }
+        int[] inputs = new int[numbers.size() / 2];
+        int[] outputs = new int[numbers.size() / 2];
+        for (int i = 0; i < inputs.length; i++) {
+          inputs[i] = toInt(numbers.get(2 * i));
+          outputs[i] = toInt(numbers.get(2 * i + 1));
+        }
+        model.curves(inputs, outputs);
+        break;
+    }
+  }
+
+  /**
+   * This helper method checks that a tone adjustment was given the right amount of numbers.
+   *
+   * @param tone    the tone adjustment.
+   * @param numbers the numbers it was given.
+   * @param min     the least amount of numbers it takes.
+   * @param max     the most amount of numbers it takes.
+   * @throws IllegalArgumentException if there are too few or too many numbers.
+   */
+  private static void checkCount(String tone, List<Double> numbers, int min, int max)
+          throws IllegalArgumentException {
+    if (numbers.size() < min) {
+      throw new IllegalArgumentException("Not enough values for " + tone);
+    }
+    if (numbers.size() > max) {
+      throw new IllegalArgumentException("Too many arguments.");
+    }
+  }
+
+  /**
+   * This helper method turns a number that should be whole into an int.
+   *
+   * @param number the number.
+   * @return the number as an int.
+   * @throws IllegalArgumentException if the number is not whole.
+   */
+  private static int toInt(double number) throws IllegalArgumentException {
+    if (number != Math.rint(number) || Math.abs(number) > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException(number + " is not a whole number");
+    }
+    return (int) number;
+  }
+
+  /**
+   * This parses a setting and changes it. Settings stay in effect for the rest of the script. For
+   * example:
+   *
+   * <p><pre>
+   *   set fixedpoint on
+   *   set fixedpoint off
+   *   set lazy on
+   *
+   *   fixedpoint - whether effects and filters use integer arithmetic, which is faster but may be
+   *                off by 1 in a color.
+   *   lazy       - whether operations are only recorded until the image is saved or flushed.
+   * </pre></p>
+   *
+   * @param setting the setting to change.
+   * @param scanner the scanner parsing the current command line.
+   * @throws IllegalArgumentException if the setting is unknown or the value is not on or off.
+   */
+  private void executeSet(String setting, Scanner scanner) throws IllegalArgumentException {
+    String value = scanner.next().toLowerCase();
+    if (scanner.hasNext()) {
+      throw new IllegalArgumentException("Too many arguments.");
+    }
+    if (!value.equals("on") && !value.equals("off")) {
+      throw new IllegalArgumentException("A setting can only be turned on or off");
+    }
+    if (setting.equals("fixedpoint")) {
+      model.setFixedPoint(value.equals("on"));
+    } else if (setting.equals("lazy")) {
+      model.setLazy(value.equals("on"));
+    } else {
+      throw new IllegalArgumentException("Unknown setting: " + setting);
+    }
+  }
+}
@@ -19,6 +19,16 @@ public interface Features {
    */
   void mosaic(String seeds);
 
+  /**
+   * Applies a mosaic filter to the current image while the number of seeds is being picked. The
+   * mosaic replaces the one shown before it if that was also a preview, so trying out many numbers
+   * leaves only one step in the history.
+   *
+   * @param seeds   the number of seeds desired in the mosaic.
+   * @param replace whether to replace the previous preview, false for the first one.
+   */
+  void previewMosaic(int seeds, boolean replace);
+
   /**
    * Applies a sharpen filter to the current image.
    */
@@ -39,6 +49,42 @@ public interface Features {
    */
   void grayscale();
 
+  /**
+   * Makes the current image brighter or darker.
+   *
+   * @param amount the amount added to every color, a whole number from -255 to 255.
+   */
+  void brightness(String amount);
+
+  /**
+   * Changes the contrast of the current image.
+   *
+   * @param factor how much colors are stretched away from gray; 1 changes nothing.
+   */
+  void contrast(String factor);
+
+  /**
+   * Applies a gamma curve to the current image.
+   *
+   * @param gamma the gamma, greater than 0; above 1 brightens the mid tones.
+   */
+  void gamma(String gamma);
+
+  /**
+   * Stretches the colors of the current image between a black point and a white point.
+   *
+   * @param values the black point and the white point, optionally followed by a gamma, separated
+   *               by spaces.
+   */
+  void levels(String values);
+
+  /**
+   * Maps the colors of the current image through a curve.
+   *
+   * @param points the input and output of every point of the curve, separated by spaces.
+   */
+  void curves(String points);
+
   /**
    * Saves the current image to a file specified by the filepath parameter. If the filepath is
    * invalid, an exception will be thrown. A valid filepath includes the file's name, its extension,
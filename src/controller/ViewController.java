@@ -21,6 +21,11 @@ public class ViewController {
    */
   private IView view;
 
+  /**
+   * Whether the current image is a mosaic preview that the next preview replaces.
+   */
+  private boolean previewShown;
+
   /**
    * Constructs a ViewController object. It takes in a model and view and calls the setFeatures
    * method on the view with a features implementation object.
@@ -70,7 +75,35 @@ public class ViewController {
         view.showError("Please enter a seed amount greater than 0");
         return;
       }
-      model.mosaic(seedAmnt);
+      try {
+        model.mosaic(seedAmnt);
+      } catch (IllegalArgumentException e) {
+        view.showError(e.getMessage());
+        return;
+      }
+      updateView();
+    }
+
+    /**
+     * Applies a mosaic filter to the current image while the number of seeds is being picked.
+     * The previous preview is undone first, so the model makes the new mosaic from the same
+     * image and only redoes the pixels whose seed changes.
+     *
+     * @param seeds   the number of seeds desired in the mosaic.
+     * @param replace whether to replace the previous preview, false for the first one.
+     */
+    @Override
+    public void previewMosaic(int seeds, boolean replace) {
+      if (replace && previewShown) {
+        model.undo();
+      }
+      previewShown = false;
+      try {
+        model.mosaic(seeds);
+        previewShown = true;
+      } catch (IllegalArgumentException e) {
+        view.showError(e.getMessage());
+      }
       updateView();
     }
 
@@ -110,6 +143,56 @@ public class ViewController {
       updateView();
     }
 
+    /**
+     * Makes the current image brighter or darker.
+     *
+     * @param amount the amount added to every color, a whole number from -255 to 255.
+     */
+    @Override
+    public void brightness(String amount) {
+      applyTone("brightness", amount);
+    }
+
+    /**
+     * Changes the contrast of the current image.
+     *
+     * @param factor how much colors are stretched away from gray; 1 changes nothing.
+     */
+    @Override
+    public void contrast(String factor) {
+      applyTone("contrast", factor);
+    }
+
+    /**
+     * Applies a gamma curve to the current image.
+     *
+     * @param gamma the gamma, greater than 0; above 1 brightens the mid tones.
+     */
+    @Override
+    public void gamma(String gamma) {
+      applyTone("gamma", gamma);
+    }
+
+    /**
+     * Stretches the colors of the current image between a black point and a white point.
+     *
+     * @param values the black point and the white point, optionally followed by a gamma.
+     */
+    @Override
+    public void levels(String values) {
+      applyTone("levels", values);
+    }
+
+    /**
+     * Maps the colors of the current image through a curve.
+     *
+     * @param points the input and output of every point of the curve.
+     */
+    @Override
+    public void curves(String points) {
+      applyTone("curves", points);
+    }
+
     /**
      * Saves the current image to a file specified by the filepath parameter. If the filepath is
      * invalid, an exception will be thrown. A valid filepath includes the file's name, its
@@ -298,6 +381,25 @@ public class ViewController {
       view.changeMenuStatus(model.isLoaded(), model.canRedo(), model.canUndo());
     }
 
+    /**
+     * This method is a helper method for the tone adjustments. It parses the numbers the same way
+     * a script does, and shows what is wrong with them if they can't be used.
+     *
+     * @param tone   the tone adjustment.
+     * @param values the numbers the user entered, separated by spaces.
+     */
+    private void applyTone(String tone, String values) {
+      // a single line, so the input can't sneak other commands in.
+      String command = "apply " + tone + " " + values.replaceAll("\\s+", " ").trim();
+      try {
+        new Controller(new ByteArrayInputStream(command.getBytes()), model).controllerGo();
+      } catch (IllegalArgumentException e) {
+        view.showError(e.getMessage());
+        return;
+      }
+      updateView();
+    }
+
     /**
      * This method tries to parse a String to an Integer. If successful, it return the interger.
      * Otherwise, it returns a 0.
@@ -0,0 +1,58 @@
+package model;
+
+/**
+ * This enum represents the ways a kernel can see past the edges of an image. When a kernel near the
+ * edge asks for a pixel outside the image, the border mode decides which pixel it gets instead.
+ */
+public enum BorderMode {
+
+  /**
+   * Pixels outside the image are black (0). This is how blur and sharpen have always worked.
+   */
+  ZERO,
+
+  /**
+   * Pixels outside the image repeat the closest edge pixel.
+   */
+  CLAMP,
+
+  /**
+   * Pixels outside the image mirror the image around its edge pixel, without repeating it (the
+   * pixel one step left of the image is the pixel one step right of the edge).
+   */
+  REFLECT,
+
+  /**
+   * Pixels outside the image wrap around to the other side, as if the image was tiled.
+   */
+  WRAP;
+
+  /**
+   * Maps a row or column index that may lie outside the image to the index of the pixel that is
+   * seen in its place.
+   *
+   * @param index The index, which may be negative or past the end.
+   * @param size  The number of rows or columns in the image.
+   * @return The index of the pixel to read, or -1 if the pixel is black.
+   */
+  int map(int index, int size) {
+    if (index >= 0 && index < size) {
+      return index;
+    }
+    switch (this) {
+      case CLAMP:
+        return index < 0 ? 0 : size - 1;
+      case REFLECT:
+        if (size == 1) {
+          return 0;
+        }
+        int period = 2 * (size - 1);
+        int folded = Math.floorMod(index, period);
+        return folded < size ? folded : period - folded;
+      case WRAP:
+        return Math.floorMod(index, size);
+      default:
+        return -1;
+    }
+  }
+}
@@ -0,0 +1,244 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * This class blurs rasters with a radius of any size. Three box blurs in a row come very close to
+ * a Gaussian blur, and a box blur can be computed with a running sum: when the window slides one
+ * pixel further, the pixel that enters is added and the pixel that leaves is subtracted. The cost
+ * per pixel is therefore the same for every radius. Pixels outside the image repeat the closest
+ * edge pixel, as with {@link BorderMode#CLAMP}.
+ */
+final class BoxBlur {
+
+  /**
+   * The number of box blurs used to approximate a Gaussian.
+   */
+  private static final int PASSES = 3;
+
+  /**
+   * Scratch buffers for the current thread, reused between calls.
+   */
+  private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+  /**
+   * This class only has static methods, so it can't be constructed.
+   */
+  private BoxBlur() {
+  }
+
+  /**
+   * Computes the radii of the three box blurs that together come closest to a Gaussian blur with
+   * the given standard deviation. The boxes have one of two neighboring odd widths, picked so that
+   * the variance of the three boxes adds up to the variance of the Gaussian.
+   *
+   * @param sigma The standard deviation of the Gaussian.
+   * @return The radius of each box blur, where a radius of r averages 2r + 1 pixels.
+   */
+  static int[] radii(double sigma) {
+    double ideal = Math.sqrt(12 * sigma * sigma / PASSES + 1);
+    int lower = (int) Math.floor(ideal);
+    if (lower % 2 == 0) {
+      lower--;
+    }
+    int upper = lower + 2;
+    double variance = 12 * sigma * sigma;
+    long lowerCount = Math.round((variance - PASSES * ((double) lower * lower + 4.0 * lower + 3))
+            / (-4.0 * lower - 4));
+
+    int[] result = new int[PASSES];
+    for (int i = 0; i < PASSES; i++) {
+      result[i] = ((i < lowerCount ? lower : upper) - 1) / 2;
+    }
+    return result;
+  }
+
+  /**
+   * Blurs a raster in place with a series of box blurs. Each box blur is done horizontally on every
+   * row first, and then vertically on every column. The scratch raster is overwritten.
+   *
+   * @param data    The raster to blur.
+   * @param scratch A raster of the same size to hold the intermediate results.
+   * @param radii   The radius of each box blur.
+   * @throws IllegalArgumentException if the rasters are the same or have different sizes.
+   */
+  static void blur(IRaster data, IRaster scratch, int[] radii) throws IllegalArgumentException {
+    if (data == scratch) {
+      throw new IllegalArgumentException("Source and destination must be different rasters");
+    }
+    if (data.getWidth() != scratch.getWidth() || data.getHeight() != scratch.getHeight()) {
+      throw new IllegalArgumentException("Source and destination must have the same size");
+    }
+    int width = data.getWidth();
+    int height = data.getHeight();
+
+    // a row never needs any other row, so all horizontal passes are done in one go.
+    TileExecutor.forEachBand(width, height, (rowStart, rowEnd) -> {
+      Scratch buffers = SCRATCH.get();
+      buffers.prepare(width);
+      for (int i = rowStart; i < rowEnd; i++) {
+        for (int h = 0; h < 3; h++) {
+          int[] in = buffers.row;
+          int[] out = buffers.out[h];
+          data.readRow(i, h, in);
+          for (int radius : radii) {
+            boxRow(in, out, width, radius);
+            int[] swap = in;
+            in = out;
+            out = swap;
+          }
+          if (in != buffers.out[h]) {
+            System.arraycopy(in, 0, buffers.out[h], 0, width);
+          }
+        }
+        scratch.writeRow(i, buffers.out[0], buffers.out[1], buffers.out[2]);
+      }
+    });
+
+    // the vertical passes go back and forth between the rasters, and must end up in data.
+    IRaster from = scratch;
+    IRaster to = data;
+    int passes = radii.length;
+    if (passes % 2 == 0) {
+      copy(scratch, data);
+      from = data;
+      to = scratch;
+    }
+    for (int radius : radii) {
+      boxColumns(from, to, radius);
+      IRaster swap = from;
+      from = to;
+      to = swap;
+    }
+  }
+
+  /**
+   * This helper method averages every pixel of a row with the radius pixels on either side of it.
+   *
+   * @param in     The row to read from.
+   * @param out    The row to write into.
+   * @param width  The width of the row.
+   * @param radius The radius of the box.
+   */
+  private static void boxRow(int[] in, int[] out, int width, int radius) {
+    long size = 2L * radius + 1;
+    int last = width - 1;
+    long sum = in[0] * (radius + 1L);
+    for (int k = 1; k <= radius; k++) {
+      sum += in[Math.min(k, last)];
+    }
+    for (int j = 0; j < width; j++) {
+      out[j] = (int) ((sum + radius) / size);
+      sum += in[Math.min(j + radius + 1, last)] - in[Math.max(j - radius, 0)];
+    }
+  }
+
+  /**
+   * This helper method averages every pixel of a raster with the radius pixels above and below it.
+   * Each band keeps a running sum for every column, which it first fills with the rows around the
+   * top of the band and then slides down one row at a time.
+   *
+   * @param src    The raster to read from.
+   * @param dst    The raster to write into.
+   * @param radius The radius of the box.
+   */
+  private static void boxColumns(IRaster src, IRaster dst, int radius) {
+    int width = src.getWidth();
+    int height = src.getHeight();
+    long size = 2L * radius + 1;
+    int last = height - 1;
+
+    TileExecutor.forEachBand(width, height, (rowStart, rowEnd) -> {
+      Scratch buffers = SCRATCH.get();
+      buffers.prepare(width);
+      int[] row = buffers.row;
+
+      for (int h = 0; h < 3; h++) {
+        long[] sum = buffers.sums[h];
+        Arrays.fill(sum, 0, width, 0);
+        for (int k = rowStart - radius; k <= rowStart + radius; k++) {
+          src.readRow(Math.min(Math.max(k, 0), last), h, row);
+          for (int j = 0; j < width; j++) {
+            sum[j] += row[j];
+          }
+        }
+      }
+
+      for (int i = rowStart; i < rowEnd; i++) {
+        for (int h = 0; h < 3; h++) {
+          long[] sum = buffers.sums[h];
+          int[] out = buffers.out[h];
+          for (int j = 0; j < width; j++) {
+            out[j] = (int) ((sum[j] + radius) / size);
+          }
+          if (i + 1 < rowEnd) {
+            src.readRow(Math.min(i + radius + 1, last), h, row);
+            for (int j = 0; j < width; j++) {
+              sum[j] += row[j];
+            }
+            src.readRow(Math.max(i - radius, 0), h, row);
+            for (int j = 0; j < width; j++) {
+              sum[j] -= row[j];
+            }
+          }
+        }
+        dst.writeRow(i, buffers.out[0], buffers.out[1], buffers.out[2]);
+      }
+    });
+  }
+
+  /**
+   * This helper method copies every pixel of one raster into another of the same size.
+   *
+   * @param src The raster to read from.
+   * @param dst The raster to write into.
+   */
+  private static void copy(IRaster src, IRaster dst) {
+    int width = src.getWidth();
+    TileExecutor.forEachBand(width, src.getHeight(), (rowStart, rowEnd) -> {
+      Scratch buffers = SCRATCH.get();
+      buffers.prepare(width);
+      for (int i = rowStart; i < rowEnd; i++) {
+        for (int h = 0; h < 3; h++) {
+          src.readRow(i, h, buffers.out[h]);
+        }
+        dst.writeRow(i, buffers.out[0], buffers.out[1], buffers.out[2]);
+      }
+    });
+  }
+
+  /**
+   * This class holds the scratch buffers of one thread: a row as read from the raster, the output
+   * rows and the running column sums, by color.
+   */
+  private static final class Scratch {
+
+    /**
+     * One row, as read from the raster.
+     */
+    private int[] row = new int[0];
+
+    /**
+     * The blurred red, green and blue rows.
+     */
+    private int[][] out = new int[3][0];
+
+    /**
+     * The running sum of every column, by color.
+     */
+    private long[][] sums = new long[3][0];
+
+    /**
+     * Makes the buffers big enough for an image width.
+     *
+     * @param width The width of the image.
+     */
+    void prepare(int width) {
+      if (row.length < width) {
+        row = new int[width];
+        out = new int[][]{new int[width], new int[width], new int[width]};
+        sums = new long[][]{new long[width], new long[width], new long[width]};
+      }
+    }
+  }
+}
@@ -0,0 +1,199 @@
+package model;
+
+/**
+ * This class represents a 3x3 color matrix, such as the ones of grayscale and sepia. The new red,
+ * green and blue of a pixel are each a weighted sum of its old red, green and blue.
+ *
+ * <p>
+ * The matrix is applied by the fastest backend available: the SIMD backend when it was built (it
+ * lives in src-vector, which only a build with --add-modules jdk.incubator.vector compiles) and the
+ * program runs with the jdk.incubator.vector module, and the scalar backend otherwise. Both give
+ * exactly the same result. The SIMD backend can be turned off with the system property
+ * "imagine.vector=false".
+ * </p>
+ *
+ * <p>
+ * In fixed point, the matrix can also be applied with tables of the products of its weights with
+ * every color (system property "imagine.colortables=true"), which gives exactly the same result.
+ * The tables beat scalar doubles, but the JIT makes the fixed-point multiplications just as fast
+ * (see ColorMatrixBenchmark), so they are not used by default.
+ * </p>
+ */
+final class ColorMatrix {
+
+  /**
+   * The name of the incubating Vector API module.
+   */
+  private static final String VECTOR_MODULE = "jdk.incubator.vector";
+
+  /**
+   * The backend every matrix is applied with.
+   */
+  private static final IColorMatrixBackend BACKEND = loadBackend();
+
+  /**
+   * Whether fixed-point matrices are applied with product tables instead of multiplications.
+   */
+  private static final boolean TABLES =
+          Boolean.parseBoolean(System.getProperty("imagine.colortables", "false"));
+
+  /**
+   * The matrix, row by row.
+   */
+  private final double[] values;
+
+  /**
+   * The matrix in fixed point, row by row.
+   */
+  private final int[] fixed;
+
+  /**
+   * The fixed-point product of every weight with every color: the entry for weight i and color v
+   * is at i * 256 + v. One half is already added to the weights of red, so rounding is a shift.
+   * Built the first time the tables are used, and kept with the matrix.
+   */
+  private volatile int[] products;
+
+  /**
+   * Constructs a color matrix.
+   *
+   * @param matrix The matrix, as three rows of three weights.
+   * @throws IllegalArgumentException if the matrix is not 3x3.
+   */
+  ColorMatrix(double[][] matrix) throws IllegalArgumentException {
+    if (matrix.length != 3) {
+      throw new IllegalArgumentException("A color matrix must be 3x3");
+    }
+    values = new double[9];
+    for (int i = 0; i < 3; i++) {
+      if (matrix[i].length != 3) {
+        throw new IllegalArgumentException("A color matrix must be 3x3");
+      }
+      System.arraycopy(matrix[i], 0, values, i * 3, 3);
+    }
+    fixed = new int[9];
+    for (int i = 0; i < 9; i++) {
+      fixed[i] = FixedPoint.of(values[i]);
+    }
+  }
+
+  /**
+   * Multiplies every pixel of a row with this matrix, in place.
+   *
+   * @param red    The red values of the row.
+   * @param green  The green values of the row.
+   * @param blue   The blue values of the row.
+   * @param length The number of pixels in the row.
+   */
+  void apply(int[] red, int[] green, int[] blue, int length) {
+    BACKEND.apply(values, red, green, blue, length);
+  }
+
+  /**
+   * Multiplies every pixel of a row with this matrix in fixed point, in place. This only uses
+   * integer instructions, and gives a result that is at most 1 off from {@link #apply} (see
+   * {@link FixedPoint}).
+   *
+   * @param red    The red values of the row.
+   * @param green  The green values of the row.
+   * @param blue   The blue values of the row.
+   * @param length The number of pixels in the row.
+   */
+  void applyFixedPoint(int[] red, int[] green, int[] blue, int length) {
+    int[] m = fixed;
+    for (int j = 0; j < length; j++) {
+      int r = red[j];
+      int g = green[j];
+      int b = blue[j];
+      red[j] = IRaster.clamp(FixedPoint.round(r * m[0] + g * m[1] + b * m[2]));
+      green[j] = IRaster.clamp(FixedPoint.round(r * m[3] + g * m[4] + b * m[5]));
+      blue[j] = IRaster.clamp(FixedPoint.round(r * m[6] + g * m[7] + b * m[8]));
+    }
+  }
+
+  /**
+   * Multiplies every pixel of a row with this matrix by looking up the products of the weights
+   * with the colors, in place. Because colors only have 256 values, the 9 products are read from
+   * tables instead of computed, and each new color is two additions and a shift. The tables hold
+   * the fixed-point products, so the result is exactly the same as {@link #applyFixedPoint}.
+   *
+   * @param red    The red values of the row.
+   * @param green  The green values of the row.
+   * @param blue   The blue values of the row.
+   * @param length The number of pixels in the row.
+   */
+  void applyTables(int[] red, int[] green, int[] blue, int length) {
+    int[] t = tables();
+    for (int j = 0; j < length; j++) {
+      int r = red[j];
+      int g = green[j] + 256;
+      int b = blue[j] + 512;
+      red[j] = IRaster.clamp((t[r] + t[g] + t[b]) >> FixedPoint.SHIFT);
+      green[j] = IRaster.clamp((t[r + 768] + t[g + 768] + t[b + 768]) >> FixedPoint.SHIFT);
+      blue[j] = IRaster.clamp((t[r + 1536] + t[g + 1536] + t[b + 1536]) >> FixedPoint.SHIFT);
+    }
+  }
+
+  /**
+   * This helper method returns the product tables of this matrix, building them the first time.
+   * Two threads may both build them, which is harmless since they build the same tables.
+   *
+   * @return The product of every weight with every color.
+   */
+  private int[] tables() {
+    int[] t = products;
+    if (t == null) {
+      t = new int[9 * 256];
+      for (int i = 0; i < 9; i++) {
+        int half = i % 3 == 0 ? FixedPoint.HALF : 0;
+        for (int v = 0; v < 256; v++) {
+          t[i * 256 + v] = v * fixed[i] + half;
+        }
+      }
+      products = t;
+    }
+    return t;
+  }
+
+  /**
+   * Turns this matrix into a point operation.
+   *
+   * @param fixedPoint Whether the operation uses fixed-point arithmetic.
+   * @return The point operation.
+   */
+  IPointOp toPointOp(boolean fixedPoint) {
+    if (!fixedPoint) {
+      return this::apply;
+    }
+    return TABLES ? this::applyTables : this::applyFixedPoint;
+  }
+
+  /**
+   * Getter for whether matrices are applied with SIMD instructions.
+   *
+   * @return True if the Vector API backend is used.
+   */
+  static boolean isVectorized() {
+    return !(BACKEND instanceof ScalarColorMatrix);
+  }
+
+  /**
+   * This helper method picks the backend. The SIMD backend is loaded by name, so that this class
+   * (and everything else) still compiles and loads when the SIMD backend wasn't built or the Vector
+   * API module isn't there.
+   *
+   * @return The backend to use.
+   */
+  private static IColorMatrixBackend loadBackend() {
+    boolean wanted = Boolean.parseBoolean(System.getProperty("imagine.vector", "true"));
+    if (wanted && ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+      try {
+        return (IColorMatrixBackend) Class.forName("model.VectorColorMatrix")
+                .getDeclaredConstructor().newInstance();
+      } catch (ReflectiveOperationException | LinkageError e) {
+        // fall through to the scalar backend
+      }
+    }
+    return new ScalarColorMatrix();
+  }
+}
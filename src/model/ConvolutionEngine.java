@@ -0,0 +1,445 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * This class applies kernels to rasters. It always reads from a source raster and writes into a
+ * separate destination raster, so every pixel sees its neighbors as they were before the filter,
+ * the result doesn't depend on the order the pixels are visited in, and the rows can be split into
+ * bands that run in parallel.
+ */
+final class ConvolutionEngine {
+
+  /**
+   * Scratch buffers for the current thread, reused between calls so that filtering doesn't
+   * allocate anything once it has warmed up.
+   */
+  private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+  /**
+   * This class only has static methods, so it can't be constructed.
+   */
+  private ConvolutionEngine() {
+  }
+
+  /**
+   * Applies a kernel to the source raster and writes the result into the destination raster.
+   * Pixels outside the source are black, as with {@link BorderMode#ZERO}.
+   *
+   * @param src    The raster to read from.
+   * @param dst    The raster to write into.
+   * @param kernel A kernel, a 2D double array.
+   * @throws IllegalArgumentException if the rasters are the same or have different sizes.
+   */
+  static void convolve(IRaster src, IRaster dst, double[][] kernel)
+          throws IllegalArgumentException {
+    convolve(src, dst, new Kernel(kernel), BorderMode.ZERO);
+  }
+
+  /**
+   * Applies a kernel to the source raster and writes the result into the destination raster. Both
+   * rasters must have the same size, and they must not be the same raster.
+   *
+   * <p>
+   * Every source row the kernel touches is copied once into a padded row that already holds the
+   * border pixels on its left and right, so the inner loop runs over plain arrays without any
+   * bounds checks. Rows above or below the image are padded the same way, or skipped if the border
+   * is black.
+   * </p>
+   *
+   * <p>
+   * Separable kernels are applied as two 1-D passes. Other kernels that are large enough are
+   * applied with fast Fourier transforms when that is cheaper (see {@link FftConvolution}).
+   * </p>
+   *
+   * @param src    The raster to read from.
+   * @param dst    The raster to write into.
+   * @param kernel The kernel to apply.
+   * @param border What the kernel sees past the edges of the image.
+   * @throws IllegalArgumentException if the rasters are the same or have different sizes.
+   */
+  static void convolve(IRaster src, IRaster dst, Kernel kernel, BorderMode border)
+          throws IllegalArgumentException {
+    convolve(src, dst, kernel, border, false);
+  }
+
+  /**
+   * Applies a kernel to the source raster and writes the result into the destination raster, like
+   * {@link #convolve(IRaster, IRaster, Kernel, BorderMode)}, optionally in fixed point. In fixed
+   * point, small kernels are applied with integer weights (see {@link FixedPoint}); separable
+   * kernels that are large enough to profit from two passes and kernels that are large enough for
+   * transforms are applied as usual.
+   *
+   * @param src        The raster to read from.
+   * @param dst        The raster to write into.
+   * @param kernel     The kernel to apply.
+   * @param border     What the kernel sees past the edges of the image.
+   * @param fixedPoint Whether to use integer arithmetic where possible.
+   * @throws IllegalArgumentException if the rasters are the same or have different sizes.
+   */
+  static void convolve(IRaster src, IRaster dst, Kernel kernel, BorderMode border,
+                       boolean fixedPoint) throws IllegalArgumentException {
+    checkRasters(src, dst);
+    int rows = kernel.getRows();
+    int cols = kernel.getCols();
+    double[][] factors = rows > 1 && cols > 1 ? kernel.separate() : null;
+    int[] fixed = fixedPoint ? kernel.toFixedPoint() : null;
+    if (factors != null && (fixed == null || rows * cols > 2 * (rows + cols))) {
+      convolveSeparable(src, dst, kernel, factors[0], factors[1], border);
+      return;
+    }
+    int size = FftConvolution.chooseSize(kernel, src.getWidth(), src.getHeight());
+    if (size > 0) {
+      FftConvolution.convolve(src, dst, kernel, border, size);
+    } else if (fixed != null) {
+      convolveFixedPoint(src, dst, kernel, fixed, border);
+    } else {
+      convolveDirect(src, dst, kernel, border);
+    }
+  }
+
+  /**
+   * This helper method applies a kernel tap by tap: every output pixel is the weighted sum of all
+   * rows * cols pixels under the kernel.
+   *
+   * @param src    The raster to read from.
+   * @param dst    The raster to write into.
+   * @param kernel The kernel to apply.
+   * @param border What the kernel sees past the edges of the image.
+   */
+  private static void convolveDirect(IRaster src, IRaster dst, Kernel kernel, BorderMode border) {
+    int width = src.getWidth();
+    int rows = kernel.getRows();
+    int cols = kernel.getCols();
+    int anchorRow = kernel.getAnchorRow();
+
+    TileExecutor.forEachBand(width, src.getHeight(), (rowStart, rowEnd) -> {
+      Scratch scratch = SCRATCH.get();
+      scratch.prepare(width, rows, cols);
+      double[] acc = scratch.acc;
+
+      for (int i = rowStart; i < rowEnd; i++) {
+        for (int h = 0; h < 3; h++) {
+          for (int j = 0; j < width; j++) {
+            acc[j] = 0;
+          }
+
+          for (int k = 0; k < rows; k++) {
+            int[] padded = scratch.paddedRow(src, border, kernel, h, i + k - anchorRow);
+            if (padded == null) {
+              continue;
+            }
+            for (int l = 0; l < cols; l++) {
+              double weight = kernel.get(k, l);
+              if (weight == 0) {
+                continue;
+              }
+              for (int j = 0; j < width; j++) {
+                acc[j] += weight * padded[j + l];
+              }
+            }
+          }
+
+          scratch.round(h, width);
+        }
+        dst.writeRow(i, scratch.out[0], scratch.out[1], scratch.out[2]);
+      }
+    });
+  }
+
+  /**
+   * This helper method applies a kernel tap by tap like {@link #convolveDirect}, but with weights
+   * in fixed point and integer sums.
+   *
+   * @param src    The raster to read from.
+   * @param dst    The raster to write into.
+   * @param kernel The kernel to apply.
+   * @param fixed  The weights of the kernel in fixed point, row by row.
+   * @param border What the kernel sees past the edges of the image.
+   */
+  private static void convolveFixedPoint(IRaster src, IRaster dst, Kernel kernel, int[] fixed,
+                                         BorderMode border) {
+    int width = src.getWidth();
+    int rows = kernel.getRows();
+    int cols = kernel.getCols();
+    int anchorRow = kernel.getAnchorRow();
+
+    TileExecutor.forEachBand(width, src.getHeight(), (rowStart, rowEnd) -> {
+      Scratch scratch = SCRATCH.get();
+      scratch.prepare(width, rows, cols);
+      int[] sum = scratch.sum;
+
+      for (int i = rowStart; i < rowEnd; i++) {
+        for (int h = 0; h < 3; h++) {
+          for (int j = 0; j < width; j++) {
+            sum[j] = FixedPoint.HALF;
+          }
+
+          for (int k = 0; k < rows; k++) {
+            int[] padded = scratch.paddedRow(src, border, kernel, h, i + k - anchorRow);
+            if (padded == null) {
+              continue;
+            }
+            for (int l = 0; l < cols; l++) {
+              int weight = fixed[k * cols + l];
+              if (weight == 0) {
+                continue;
+              }
+              for (int j = 0; j < width; j++) {
+                sum[j] += weight * padded[j + l];
+              }
+            }
+          }
+
+          int[] out = scratch.out[h];
+          for (int j = 0; j < width; j++) {
+            out[j] = sum[j] >> FixedPoint.SHIFT;
+          }
+        }
+        dst.writeRow(i, scratch.out[0], scratch.out[1], scratch.out[2]);
+      }
+    });
+  }
+
+  /**
+   * This helper method applies a separable kernel as two 1-D passes. Every source row the band
+   * needs is filtered once with the row weights and kept in a ring, and each output row is then the
+   * column-weighted sum of the filtered rows above and below it. This takes rows + cols operations
+   * per pixel instead of rows * cols.
+   *
+   * @param src    The raster to read from.
+   * @param dst    The raster to write into.
+   * @param kernel The kernel to apply.
+   * @param column The column weights of the kernel.
+   * @param row    The row weights of the kernel.
+   * @param border What the kernel sees past the edges of the image.
+   */
+  private static void convolveSeparable(IRaster src, IRaster dst, Kernel kernel, double[] column,
+                                        double[] row, BorderMode border) {
+    int width = src.getWidth();
+    int rows = kernel.getRows();
+    int cols = kernel.getCols();
+    int anchorRow = kernel.getAnchorRow();
+
+    TileExecutor.forEachBand(width, src.getHeight(), (rowStart, rowEnd) -> {
+      Scratch scratch = SCRATCH.get();
+      scratch.prepare(width, rows, cols);
+      double[] acc = scratch.acc;
+
+      for (int i = rowStart; i < rowEnd; i++) {
+        for (int h = 0; h < 3; h++) {
+          for (int j = 0; j < width; j++) {
+            acc[j] = 0;
+          }
+
+          for (int k = 0; k < rows; k++) {
+            double weight = column[k];
+            if (weight == 0) {
+              continue;
+            }
+            double[] filtered = scratch.filteredRow(src, border, kernel, row, h,
+                    i + k - anchorRow);
+            if (filtered == null) {
+              continue;
+            }
+            for (int j = 0; j < width; j++) {
+              acc[j] += weight * filtered[j];
+            }
+          }
+
+          scratch.round(h, width);
+        }
+        dst.writeRow(i, scratch.out[0], scratch.out[1], scratch.out[2]);
+      }
+    });
+  }
+
+  /**
+   * This helper method makes sure two rasters can be used as the source and destination of a
+   * convolution.
+   *
+   * @param src The raster to read from.
+   * @param dst The raster to write into.
+   * @throws IllegalArgumentException if the rasters are the same or have different sizes.
+   */
+  private static void checkRasters(IRaster src, IRaster dst) throws IllegalArgumentException {
+    if (src == dst) {
+      throw new IllegalArgumentException("Source and destination must be different rasters");
+    }
+    if (src.getWidth() != dst.getWidth() || src.getHeight() != dst.getHeight()) {
+      throw new IllegalArgumentException("Source and destination must have the same size");
+    }
+  }
+
+  /**
+   * This class holds the scratch buffers of one thread: the padded source rows the kernel is
+   * currently over and, for separable kernels, the same rows filtered horizontally (one small ring
+   * of each per color), the accumulators and the output rows.
+   */
+  private static final class Scratch {
+
+    /**
+     * The padded source rows, by color and ring slot.
+     */
+    private int[][][] padded = new int[3][0][0];
+
+    /**
+     * Which row of the image (possibly outside it) each ring slot holds, by color and slot.
+     */
+    private int[][] cached = new int[3][0];
+
+    /**
+     * The horizontally filtered source rows, by color and ring slot.
+     */
+    private double[][][] filtered = new double[3][0][0];
+
+    /**
+     * Which row of the image (possibly outside it) each filtered ring slot holds, by color and
+     * slot.
+     */
+    private int[][] filteredCached = new int[3][0];
+
+    /**
+     * One unpadded row, as read from the raster.
+     */
+    private int[] row = new int[0];
+
+    /**
+     * The weighted sums of the row being filtered.
+     */
+    private double[] acc = new double[0];
+
+    /**
+     * The fixed-point sums of the row being filtered.
+     */
+    private int[] sum = new int[0];
+
+    /**
+     * The filtered red, green and blue rows.
+     */
+    private int[][] out = new int[3][0];
+
+    /**
+     * Makes the buffers big enough for an image and kernel size, and forgets the cached rows.
+     *
+     * @param width The width of the image.
+     * @param rows  The number of rows of the kernel.
+     * @param cols  The number of columns of the kernel.
+     */
+    void prepare(int width, int rows, int cols) {
+      int paddedWidth = width + cols - 1;
+      if (padded[0].length < rows || padded[0][0].length < paddedWidth) {
+        padded = new int[3][Math.max(rows, padded[0].length)][paddedWidth];
+        cached = new int[3][padded[0].length];
+      }
+      if (filtered[0].length < rows || filtered[0][0].length < width) {
+        filtered = new double[3][Math.max(rows, filtered[0].length)][width];
+        filteredCached = new int[3][filtered[0].length];
+      }
+      if (row.length < width) {
+        row = new int[width];
+        acc = new double[width];
+        sum = new int[width];
+        out = new int[][]{new int[width], new int[width], new int[width]};
+      }
+      for (int[] slots : cached) {
+        Arrays.fill(slots, Integer.MIN_VALUE);
+      }
+      for (int[] slots : filteredCached) {
+        Arrays.fill(slots, Integer.MIN_VALUE);
+      }
+    }
+
+    /**
+     * Rounds the accumulator into the output row of a color.
+     *
+     * @param channel The color (0, 1, 2 for red, green, blue).
+     * @param width   The width of the image.
+     */
+    void round(int channel, int width) {
+      int[] result = out[channel];
+      for (int j = 0; j < width; j++) {
+        result[j] = (int) Math.round(acc[j]);
+      }
+    }
+
+    /**
+     * Gets a source row with its left and right border already filled in. Rows stay in the ring
+     * while the kernel slides down, so each row is only read and padded once per band.
+     *
+     * @param src     The raster to read from.
+     * @param border  What the kernel sees past the edges of the image.
+     * @param kernel  The kernel being applied.
+     * @param channel The color (0, 1, 2 for red, green, blue).
+     * @param index   The row, which may be outside the image.
+     * @return The padded row, or null if the row is black.
+     */
+    int[] paddedRow(IRaster src, BorderMode border, Kernel kernel, int channel, int index) {
+      int width = src.getWidth();
+      int source = border.map(index, src.getHeight());
+      if (source < 0) {
+        return null;
+      }
+      int slot = Math.floorMod(index, kernel.getRows());
+      int[] result = padded[channel][slot];
+      if (cached[channel][slot] == index) {
+        return result;
+      }
+
+      int left = kernel.getAnchorCol();
+      int right = kernel.getCols() - 1 - left;
+      src.readRow(source, channel, row);
+      System.arraycopy(row, 0, result, left, width);
+      for (int p = 0; p < left; p++) {
+        int col = border.map(p - left, width);
+        result[p] = col < 0 ? 0 : row[col];
+      }
+      for (int p = 0; p < right; p++) {
+        int col = border.map(width + p, width);
+        result[left + width + p] = col < 0 ? 0 : row[col];
+      }
+      cached[channel][slot] = index;
+      return result;
+    }
+
+    /**
+     * Gets a source row filtered with the row weights of a separable kernel. Like padded rows,
+     * filtered rows stay in a ring while the kernel slides down, so each is only computed once per
+     * band.
+     *
+     * @param src     The raster to read from.
+     * @param border  What the kernel sees past the edges of the image.
+     * @param kernel  The kernel being applied.
+     * @param weights The row weights of the kernel.
+     * @param channel The color (0, 1, 2 for red, green, blue).
+     * @param index   The row, which may be outside the image.
+     * @return The filtered row, or null if the row is black.
+     */
+    double[] filteredRow(IRaster src, BorderMode border, Kernel kernel, double[] weights,
+                         int channel, int index) {
+      int slot = Math.floorMod(index, kernel.getRows());
+      double[] result = filtered[channel][slot];
+      if (filteredCached[channel][slot] == index) {
+        return result;
+      }
+      int[] source = paddedRow(src, border, kernel, channel, index);
+      if (source == null) {
+        return null;
+      }
+
+      int width = src.getWidth();
+      Arrays.fill(result, 0, width, 0);
+      for (int l = 0; l < weights.length; l++) {
+        double weight = weights[l];
+        if (weight == 0) {
+          continue;
+        }
+        for (int j = 0; j < width; j++) {
+          result[j] += weight * source[j + l];
+        }
+      }
+      filteredCached[channel][slot] = index;
+      return result;
+    }
+  }
+}
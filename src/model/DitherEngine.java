@@ -0,0 +1,187 @@
+package model;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * This class dithers rasters with Floyd-Steinberg error diffusion: every pixel is replaced by the
+ * color a quantizer picks for it, and the difference (the error) is spread over the pixels to the
+ * right and below, which haven't been picked yet. Every color gets its own error.
+ *
+ * <p>
+ * A pixel only receives error from the row above it and from the pixel before it, so a row can be
+ * worked on while the row above is still being worked on, as long as it stays a little behind (a
+ * wavefront). Each thread takes the next row that nobody has taken yet, and waits whenever it
+ * catches up with the row above. The error for a row only comes from the row above, and each
+ * value is read and cleared before the row two further down writes it again, so two error rows
+ * per color are all that is kept. Integer additions give the same sum in any order, so the result
+ * is the same for any number of threads.
+ * </p>
+ *
+ * <p>
+ * With serpentine scanning, every other row goes from right to left, which avoids the diagonal
+ * patterns of always going the same way. A row then needs the whole row above before it can start,
+ * so serpentine dithering runs one row at a time.
+ * </p>
+ */
+final class DitherEngine {
+
+  /**
+   * The value below which a color becomes 0, and at or above which it becomes 255.
+   */
+  static final int THRESHOLD = 127;
+
+  /**
+   * The quantizer for black and white, which only looks at red (the image is gray already).
+   */
+  static final IQuantizer BLACK_AND_WHITE = (red, green, blue) -> red < THRESHOLD ? 0 : 0xFFFFFF;
+
+  /**
+   * The quantizer for the eight colors where every color is 0 or 255.
+   */
+  static final IQuantizer EIGHT_COLORS = (red, green, blue) ->
+      (red < THRESHOLD ? 0 : 0xFF0000) | (green < THRESHOLD ? 0 : 0xFF00)
+          | (blue < THRESHOLD ? 0 : 0xFF);
+
+  /**
+   * The number of pixels a row works on before telling the row below how far it is.
+   */
+  private static final int CHUNK = 32;
+
+  /**
+   * The number of times a thread checks again right away before giving up its processor.
+   */
+  private static final int SPINS = 64;
+
+  /**
+   * This class only has static methods, so it can't be constructed.
+   */
+  private DitherEngine() {
+  }
+
+  /**
+   * Dithers a raster in place.
+   *
+   * @param data       The raster to dither.
+   * @param quantizer  The quantizer that picks the new colors.
+   * @param serpentine Whether every other row goes from right to left.
+   * @param gray       Whether the raster is gray, so only red needs to be worked on and the new
+   *                   colors are gray as well.
+   */
+  static void dither(IRaster data, IQuantizer quantizer, boolean serpentine, boolean gray) {
+    int width = data.getWidth();
+    int height = data.getHeight();
+    int channels = gray ? 1 : 3;
+    int[][][] errors = new int[2][channels][width];
+    AtomicIntegerArray progress = new AtomicIntegerArray(height);
+    AtomicInteger nextRow = new AtomicInteger();
+
+    TileExecutor.forEachWorker((long) width * height, () -> {
+      int[][] row = new int[channels][width];
+      int[] carry = new int[channels];
+      int[] values = new int[channels];
+      for (int i = nextRow.getAndIncrement(); i < height; i = nextRow.getAndIncrement()) {
+        for (int h = 0; h < channels; h++) {
+          data.readRow(i, h, row[h]);
+        }
+        ditherRow(i, row, errors[i % 2], errors[(i + 1) % 2], carry, values, quantizer,
+                serpentine, height, progress);
+        if (gray) {
+          data.writeRow(i, row[0], row[0], row[0]);
+        } else {
+          data.writeRow(i, row[0], row[1], row[2]);
+        }
+      }
+    });
+  }
+
+  /**
+   * This helper method dithers one row, in place.
+   *
+   * @param i          The row.
+   * @param row        The colors of the row, which are replaced by the new colors.
+   * @param above      The error the row above has spread into this row, which is cleared.
+   * @param below      The error to spread into the row below.
+   * @param carry      Scratch space for the error spread to the next pixel, by color.
+   * @param values     Scratch space for the colors of a pixel with the error added.
+   * @param quantizer  The quantizer that picks the new colors.
+   * @param serpentine Whether every other row goes from right to left.
+   * @param height     The height of the raster.
+   * @param progress   How many pixels of every row have been worked on.
+   */
+  private static void ditherRow(int i, int[][] row, int[][] above, int[][] below, int[] carry,
+                                int[] values, IQuantizer quantizer, boolean serpentine,
+                                int height, AtomicIntegerArray progress) {
+    int width = row[0].length;
+    int channels = row.length;
+    boolean last = i + 1 == height;
+    int step = serpentine && i % 2 == 1 ? -1 : 1;
+    boolean aboveForward = !serpentine || i % 2 == 1;
+    int ready = i == 0 ? width : 0;
+    Arrays.fill(carry, 0);
+
+    for (int count = 0, j = step > 0 ? 0 : width - 1; count < width; count++, j += step) {
+      // the error for this pixel is final once the row above has passed the pixel after it.
+      int needed = aboveForward ? Math.min(j + 2, width) : Math.min(width - j + 1, width);
+      if (ready < needed) {
+        ready = await(progress, i - 1, needed);
+      }
+
+      for (int h = 0; h < channels; h++) {
+        values[h] = row[h][j] + above[h][j] + carry[h];
+        above[h][j] = 0;
+      }
+      int rgb = channels == 1
+          ? quantizer.quantize(values[0], values[0], values[0])
+          : quantizer.quantize(values[0], values[1], values[2]);
+
+      int back = j - step;
+      int ahead = j + step;
+      for (int h = 0; h < channels; h++) {
+        int color = (rgb >> (16 - 8 * h)) & 0xFF;
+        int error = values[h] - color;
+        row[h][j] = color;
+        // round(error * weight / 16), rounding halves up like Math.round.
+        carry[h] = (7 * error + 8) >> 4;
+        if (!last) {
+          int[] next = below[h];
+          if (back >= 0 && back < width) {
+            next[back] += (3 * error + 8) >> 4;
+          }
+          next[j] += (5 * error + 8) >> 4;
+          if (ahead >= 0 && ahead < width) {
+            next[ahead] += (error + 8) >> 4;
+          }
+        }
+      }
+
+      if ((count + 1) % CHUNK == 0) {
+        progress.set(i, count + 1);
+      }
+    }
+    progress.set(i, width);
+  }
+
+  /**
+   * This helper method waits until a row has been worked on far enough.
+   *
+   * @param progress How many pixels of every row have been worked on.
+   * @param row      The row to wait for.
+   * @param needed   The number of pixels it must have worked on.
+   * @return The number of pixels it has worked on, at least needed.
+   */
+  private static int await(AtomicIntegerArray progress, int row, int needed) {
+    int spins = 0;
+    int done = progress.get(row);
+    while (done < needed) {
+      if (++spins < SPINS) {
+        Thread.onSpinWait();
+      } else {
+        Thread.yield();
+      }
+      done = progress.get(row);
+    }
+    return done;
+  }
+}
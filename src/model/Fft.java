@@ -0,0 +1,133 @@
+package model;
+
+/**
+ * This class computes fast Fourier transforms of one size, which must be a power of two. The
+ * twiddle factors and the bit-reversal order are computed once when the transform is constructed,
+ * so an instance can be shared between threads and used over and over.
+ */
+final class Fft {
+
+  /**
+   * The number of points of the transform.
+   */
+  private final int size;
+
+  /**
+   * The bit-reversed index of every point.
+   */
+  private final int[] reversed;
+
+  /**
+   * The cosines of the twiddle factors.
+   */
+  private final double[] cos;
+
+  /**
+   * The sines of the twiddle factors.
+   */
+  private final double[] sin;
+
+  /**
+   * Constructs a transform of the given size.
+   *
+   * @param size The number of points, a power of two.
+   * @throws IllegalArgumentException if the size is not a power of two.
+   */
+  Fft(int size) throws IllegalArgumentException {
+    if (size < 1 || Integer.bitCount(size) != 1) {
+      throw new IllegalArgumentException("The size of an FFT must be a power of two");
+    }
+    this.size = size;
+    this.reversed = new int[size];
+    int bits = Integer.numberOfTrailingZeros(size);
+    for (int i = 0; i < size; i++) {
+      reversed[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+    }
+    this.cos = new double[size / 2];
+    this.sin = new double[size / 2];
+    for (int k = 0; k < size / 2; k++) {
+      cos[k] = Math.cos(2 * Math.PI * k / size);
+      sin[k] = Math.sin(2 * Math.PI * k / size);
+    }
+  }
+
+  /**
+   * Getter for the number of points of the transform.
+   *
+   * @return The size.
+   */
+  int getSize() {
+    return size;
+  }
+
+  /**
+   * Transforms size complex points in place. The inverse transform isn't scaled, so transforming
+   * forward and back multiplies every point by size.
+   *
+   * @param re      The real parts.
+   * @param im      The imaginary parts.
+   * @param offset  The index of the first point in the arrays.
+   * @param inverse Whether to compute the inverse transform.
+   */
+  void transform(double[] re, double[] im, int offset, boolean inverse) {
+    for (int i = 0; i < size; i++) {
+      int j = reversed[i];
+      if (i < j) {
+        double t = re[offset + i];
+        re[offset + i] = re[offset + j];
+        re[offset + j] = t;
+        t = im[offset + i];
+        im[offset + i] = im[offset + j];
+        im[offset + j] = t;
+      }
+    }
+
+    double sign = inverse ? 1 : -1;
+    for (int length = 2; length <= size; length <<= 1) {
+      int half = length >> 1;
+      int step = size / length;
+      for (int start = offset; start < offset + size; start += length) {
+        for (int k = 0; k < half; k++) {
+          double wr = cos[k * step];
+          double wi = sign * sin[k * step];
+          int a = start + k;
+          int b = a + half;
+          double xr = re[b] * wr - im[b] * wi;
+          double xi = re[b] * wi + im[b] * wr;
+          re[b] = re[a] - xr;
+          im[b] = im[a] - xi;
+          re[a] += xr;
+          im[a] += xi;
+        }
+      }
+    }
+  }
+
+  /**
+   * Transforms size x size complex points in place, stored row by row: first every row, then every
+   * column. The inverse transform isn't scaled.
+   *
+   * @param re        The real parts.
+   * @param im        The imaginary parts.
+   * @param columnRe  Scratch space for the real parts of one column, at least size long.
+   * @param columnIm  Scratch space for the imaginary parts of one column, at least size long.
+   * @param inverse   Whether to compute the inverse transform.
+   */
+  void transform2d(double[] re, double[] im, double[] columnRe, double[] columnIm,
+                   boolean inverse) {
+    for (int row = 0; row < size; row++) {
+      transform(re, im, row * size, inverse);
+    }
+    for (int col = 0; col < size; col++) {
+      for (int row = 0; row < size; row++) {
+        columnRe[row] = re[row * size + col];
+        columnIm[row] = im[row * size + col];
+      }
+      transform(columnRe, columnIm, 0, inverse);
+      for (int row = 0; row < size; row++) {
+        re[row * size + col] = columnRe[row];
+        im[row * size + col] = columnIm[row];
+      }
+    }
+  }
+}
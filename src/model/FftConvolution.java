@@ -0,0 +1,272 @@
+package model;
+
+/**
+ * This class applies large kernels with fast Fourier transforms. The image is cut into square
+ * tiles, and each tile is convolved by multiplying its transform with the transform of the kernel.
+ * A tile reads the pixels around it as well (as far as the kernel reaches), so the circular
+ * wrap-around of the transform only spoils the edge of the tile, which is thrown away. Because of
+ * that, the tiles don't depend on each other and are run in parallel.
+ *
+ * <p>
+ * The cost per pixel grows with the logarithm of the tile size instead of with the number of
+ * weights, so this is much faster than applying a big kernel tap by tap. For small kernels the
+ * transforms cost more than they save; {@link #chooseSize(Kernel, int, int)} decides.
+ * </p>
+ */
+final class FftConvolution {
+
+  /**
+   * The smallest tile size that is considered.
+   */
+  private static final int MIN_SIZE = 16;
+
+  /**
+   * The largest tile size that is considered.
+   */
+  private static final int MAX_SIZE = 512;
+
+  /**
+   * How much slower a floating point operation in a transform is than one in the direct
+   * convolution, which walks memory in order and is easy for the JIT to vectorize. Measured on
+   * 2000x2000 images.
+   */
+  private static final double TRANSFORM_PENALTY = 2.0;
+
+  /**
+   * Scratch buffers for the current thread, reused between calls.
+   */
+  private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+  /**
+   * This class only has static methods, so it can't be constructed.
+   */
+  private FftConvolution() {
+  }
+
+  /**
+   * Decides whether a kernel is cheaper to apply with transforms than tap by tap, and with which
+   * tile size. The direct cost is two operations per non-zero weight per pixel and color. A tile
+   * costs two forward and two inverse transforms (red and green share one complex transform, blue
+   * gets the other) and a product of the spectra.
+   *
+   * @param kernel The kernel to apply.
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @return The tile size to use, or 0 if the kernel should be applied directly.
+   */
+  static int chooseSize(Kernel kernel, int width, int height) {
+    int taps = 0;
+    for (int k = 0; k < kernel.getRows(); k++) {
+      for (int l = 0; l < kernel.getCols(); l++) {
+        if (kernel.get(k, l) != 0) {
+          taps++;
+        }
+      }
+    }
+    double best = 6.0 * taps * width * height;
+    int bestSize = 0;
+
+    for (int size = MIN_SIZE; size <= MAX_SIZE; size <<= 1) {
+      int blockRows = size - kernel.getRows() + 1;
+      int blockCols = size - kernel.getCols() + 1;
+      if (blockRows < 1 || blockCols < 1) {
+        continue;
+      }
+      long tiles = (long) ((height + blockRows - 1) / blockRows)
+              * ((width + blockCols - 1) / blockCols);
+      double points = (double) size * size;
+      double perTile = 4 * 5 * points * Math.log(points) / Math.log(2) + 2 * 6 * points;
+      double cost = TRANSFORM_PENALTY * perTile * tiles;
+      if (cost < best) {
+        best = cost;
+        bestSize = size;
+      }
+      if (blockRows >= height && blockCols >= width) {
+        break;
+      }
+    }
+    return bestSize;
+  }
+
+  /**
+   * Applies a kernel to the source raster and writes the result into the destination raster,
+   * which must be a different raster of the same size.
+   *
+   * @param src    The raster to read from.
+   * @param dst    The raster to write into.
+   * @param kernel The kernel to apply.
+   * @param border What the kernel sees past the edges of the image.
+   * @param size   The tile size, a power of two larger than the kernel.
+   */
+  static void convolve(IRaster src, IRaster dst, Kernel kernel, BorderMode border, int size) {
+    int width = src.getWidth();
+    int height = src.getHeight();
+    int rows = kernel.getRows();
+    int cols = kernel.getCols();
+    int anchorRow = kernel.getAnchorRow();
+    int anchorCol = kernel.getAnchorCol();
+    int blockRows = size - rows + 1;
+    int blockCols = size - cols + 1;
+    int tileCols = (width + blockCols - 1) / blockCols;
+    int tiles = ((height + blockRows - 1) / blockRows) * tileCols;
+
+    Fft fft = new Fft(size);
+    double[][] spectrum = spectrum(kernel, fft);
+    double[] spectrumRe = spectrum[0];
+    double[] spectrumIm = spectrum[1];
+
+    // every tile computes about blockRows * blockCols pixels, which is what the threshold counts.
+    TileExecutor.forEachBand(blockRows * blockCols, tiles, (tileStart, tileEnd) -> {
+      Scratch scratch = SCRATCH.get();
+      scratch.prepare(size);
+      double[] re = scratch.re;
+      double[] im = scratch.im;
+      double[] blue = scratch.blue;
+      double[] zero = scratch.zero;
+
+      for (int tile = tileStart; tile < tileEnd; tile++) {
+        int top = (tile / tileCols) * blockRows;
+        int left = (tile % tileCols) * blockCols;
+        int outRows = Math.min(blockRows, height - top);
+        int outCols = Math.min(blockCols, width - left);
+
+        // gather the tile and the pixels the kernel reaches around it: red and green go into one
+        // complex transform, blue into another.
+        for (int p = 0; p < size; p++) {
+          int row = border.map(top - anchorRow + p, height);
+          for (int q = 0; q < size; q++) {
+            int col = border.map(left - anchorCol + q, width);
+            int index = p * size + q;
+            if (row < 0 || col < 0) {
+              re[index] = 0;
+              im[index] = 0;
+              blue[index] = 0;
+            } else {
+              int rgb = src.getRGB(row, col);
+              re[index] = (rgb >> 16) & 0xFF;
+              im[index] = (rgb >> 8) & 0xFF;
+              blue[index] = rgb & 0xFF;
+            }
+            zero[index] = 0;
+          }
+        }
+
+        filter(fft, re, im, spectrumRe, spectrumIm, scratch);
+        filter(fft, blue, zero, spectrumRe, spectrumIm, scratch);
+
+        for (int a = 0; a < outRows; a++) {
+          int base = (a + rows - 1) * size + cols - 1;
+          for (int b = 0; b < outCols; b++) {
+            int index = base + b;
+            dst.setRGB(top + a, left + b, (IRaster.clamp((int) Math.round(re[index])) << 16)
+                    | (IRaster.clamp((int) Math.round(im[index])) << 8)
+                    | IRaster.clamp((int) Math.round(blue[index])));
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * This helper method computes the transform of a kernel, ready to be multiplied with the
+   * transform of a tile. The kernel is flipped, because the engine weighs the pixel at offset
+   * (k, l) with weight (k, l) where a convolution would use the mirrored weight, and it's scaled so
+   * that the inverse transform comes out at the right brightness.
+   *
+   * @param kernel The kernel.
+   * @param fft    The transform of the tile size.
+   * @return The real and imaginary parts of the transform, in that order.
+   */
+  private static double[][] spectrum(Kernel kernel, Fft fft) {
+    int size = fft.getSize();
+    int rows = kernel.getRows();
+    int cols = kernel.getCols();
+    double scale = 1.0 / ((double) size * size);
+    double[] re = new double[size * size];
+    double[] im = new double[size * size];
+    for (int k = 0; k < rows; k++) {
+      for (int l = 0; l < cols; l++) {
+        re[(rows - 1 - k) * size + (cols - 1 - l)] = kernel.get(k, l) * scale;
+      }
+    }
+    fft.transform2d(re, im, new double[size], new double[size], false);
+    return new double[][]{re, im};
+  }
+
+  /**
+   * This helper method convolves one tile with the kernel: it transforms the tile, multiplies it
+   * with the spectrum of the kernel and transforms it back, all in place. Because the kernel is
+   * real, the real and imaginary parts of the tile are convolved separately, which is how two
+   * colors share one transform.
+   *
+   * @param fft        The transform of the tile size.
+   * @param re         The real parts of the tile.
+   * @param im         The imaginary parts of the tile.
+   * @param spectrumRe The real parts of the spectrum of the kernel.
+   * @param spectrumIm The imaginary parts of the spectrum of the kernel.
+   * @param scratch    The scratch buffers of the current thread.
+   */
+  private static void filter(Fft fft, double[] re, double[] im, double[] spectrumRe,
+                             double[] spectrumIm, Scratch scratch) {
+    fft.transform2d(re, im, scratch.columnRe, scratch.columnIm, false);
+    for (int i = 0; i < re.length; i++) {
+      double r = re[i] * spectrumRe[i] - im[i] * spectrumIm[i];
+      im[i] = re[i] * spectrumIm[i] + im[i] * spectrumRe[i];
+      re[i] = r;
+    }
+    fft.transform2d(re, im, scratch.columnRe, scratch.columnIm, true);
+  }
+
+  /**
+   * This class holds the scratch buffers of one thread: the tile being transformed and one column
+   * of it.
+   */
+  private static final class Scratch {
+
+    /**
+     * The red values of the tile, then the real parts of its transform.
+     */
+    private double[] re = new double[0];
+
+    /**
+     * The green values of the tile, then the imaginary parts of its transform.
+     */
+    private double[] im = new double[0];
+
+    /**
+     * The blue values of the tile, then the real parts of its transform.
+     */
+    private double[] blue = new double[0];
+
+    /**
+     * The imaginary parts that go with the blue values.
+     */
+    private double[] zero = new double[0];
+
+    /**
+     * The real parts of one column.
+     */
+    private double[] columnRe = new double[0];
+
+    /**
+     * The imaginary parts of one column.
+     */
+    private double[] columnIm = new double[0];
+
+    /**
+     * Makes the buffers the right size for a tile size.
+     *
+     * @param size The tile size.
+     */
+    void prepare(int size) {
+      if (re.length != size * size) {
+        re = new double[size * size];
+        im = new double[size * size];
+        blue = new double[size * size];
+        zero = new double[size * size];
+        columnRe = new double[size];
+        columnIm = new double[size];
+      }
+    }
+  }
+}
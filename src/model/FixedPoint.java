@@ -0,0 +1,54 @@
+package model;
+
+/**
+ * This class holds the helpers for fixed-point arithmetic. A fixed-point number is an int that
+ * holds a real number times 2^16, so weights can be multiplied with colors using only integer
+ * instructions, which are faster than doubles and easier for the JIT to vectorize.
+ *
+ * <p>
+ * A weight w becomes round(w * 2^16), so it's off by at most 2^-17. A weighted sum of n colors is
+ * then off by at most n * 255 * 2^-17 before it's rounded, which is less than 0.006 for a color
+ * matrix and less than 0.05 for a 5x5 kernel. Rounding turns that into a difference of at most 1
+ * from the double result, and only for sums that land within that distance of a half. Weights that
+ * are multiples of 2^-16 (like the ones of blur and sharpen) are exact, and give exactly the same
+ * result as doubles.
+ * </p>
+ */
+final class FixedPoint {
+
+  /**
+   * The number of bits after the binary point.
+   */
+  static final int SHIFT = 16;
+
+  /**
+   * One half, added before shifting to round to the nearest integer.
+   */
+  static final int HALF = 1 << (SHIFT - 1);
+
+  /**
+   * This class only has static methods, so it can't be constructed.
+   */
+  private FixedPoint() {
+  }
+
+  /**
+   * Converts a real number to fixed point.
+   *
+   * @param value The number.
+   * @return The closest fixed-point number.
+   */
+  static int of(double value) {
+    return (int) Math.round(value * (1 << SHIFT));
+  }
+
+  /**
+   * Rounds a fixed-point number to the nearest integer, rounding halves up like Math.round.
+   *
+   * @param value The fixed-point number.
+   * @return The nearest integer.
+   */
+  static int round(int value) {
+    return (value + HALF) >> SHIFT;
+  }
+}
@@ -0,0 +1,20 @@
+package model;
+
+/**
+ * This interface represents a way of multiplying the colors of a row of pixels with a 3x3 color
+ * matrix. Every implementation must give exactly the same result as {@link ScalarColorMatrix}.
+ */
+interface IColorMatrixBackend {
+
+  /**
+   * Multiplies every pixel of a row with a color matrix, in place. Each new color is rounded to
+   * the nearest integer and kept between 0 and 255.
+   *
+   * @param matrix The matrix, row by row (the first three values make the new red).
+   * @param red    The red values of the row.
+   * @param green  The green values of the row.
+   * @param blue   The blue values of the row.
+   * @param length The number of pixels in the row.
+   */
+  void apply(double[] matrix, int[] red, int[] green, int[] blue, int length);
+}
@@ -24,6 +24,15 @@ public interface IImage {
    */
   void save(String filepath);
 
+  /**
+   * Sets whether the effects and filters of this image use fixed-point (integer) arithmetic
+   * instead of doubles. Fixed point is faster; blur and sharpen give exactly the same result, and
+   * grayscale, sepia and custom kernels are at most 1 off in any color.
+   *
+   * @param fixedPoint True to use fixed point, false to use doubles.
+   */
+  void setFixedPoint(boolean fixedPoint);
+
   /**
    * Transforms the color of this image to a gray scale.
    */
@@ -39,23 +48,110 @@ public interface IImage {
    */
   void blur();
 
+  /**
+   * Applies a blur filter with the given radius to the image. The larger the radius, the blurrier
+   * the image, and the blur takes the same time for every radius. A radius of 1 is the same as
+   * {@link #blur()}.
+   *
+   * @param radius The radius of the blur, at least 1.
+   * @throws IllegalArgumentException if the radius is less than 1.
+   */
+  void blur(int radius) throws IllegalArgumentException;
+
   /**
    * Applies a sharpen filter to the image, strengthening lines and sharpening edges of the image.
    */
   void sharpen();
 
+  /**
+   * Applies a custom kernel to the image. The pixel being filtered sits under the center of the
+   * kernel (for an even size, the cell just before the middle).
+   *
+   * @param rows   The number of rows of the kernel.
+   * @param cols   The number of columns of the kernel.
+   * @param values The rows * cols weights of the kernel, row by row.
+   * @param border What the kernel sees past the edges of the image.
+   * @throws IllegalArgumentException if the size is not positive or doesn't match the weights.
+   */
+  void applyKernel(int rows, int cols, double[] values, BorderMode border)
+          throws IllegalArgumentException;
+
   /**
    * Applies a dither filter to the image, turning it into a grayscale image where each pixel is
    * either pure white or pure black.
    */
   void dither();
 
+  /**
+   * Applies a dither filter to the image, with error diffusion.
+   *
+   * @param color      Whether every color is dithered on its own into 0 or 255, leaving eight
+   *                   colors, instead of the image turning black and white.
+   * @param serpentine Whether every other row is worked on from right to left, which avoids
+   *                   diagonal patterns.
+   */
+  void dither(boolean color, boolean serpentine);
+
+  /**
+   * Turns the image black and white with an ordered (Bayer) threshold map, which gives a regular
+   * cross-hatched pattern. Every pixel is independent, so this is much faster than {@link
+   * #dither()}.
+   *
+   * @param size The size of the threshold map: 2, 4, 8, 16, 32 or 64.
+   * @throws IllegalArgumentException if the size is not one of those.
+   */
+  void ditherOrdered(int size) throws IllegalArgumentException;
+
+  /**
+   * Turns the image black and white with a blue-noise threshold map, which gives a pattern close
+   * to {@link #dither()} without its cost.
+   */
+  void ditherBlueNoise();
+
+  /**
+   * Reduces the image to a few colors, picked with the median-cut method so that they fit the
+   * image. Every pixel becomes the palette color closest to it, or, with dithering, the error is
+   * spread to the pixels around it like {@link #dither(boolean, boolean)} does.
+   *
+   * @param colors The number of colors, from 1 to 256.
+   * @param dither Whether to dither with error diffusion.
+   * @throws IllegalArgumentException if the number of colors is out of range.
+   */
+  void quantize(int colors, boolean dither) throws IllegalArgumentException;
+
   /**
    * Applies a mosaic filter to the image, grouping clusters of pixels and making their colors
    * similar so that the image appears to look like stained-glass.
    *
    * @param seedAmnt the amount of clusters desired. The higher the number, the closer to the
    *                 original image.
+   * @throws IllegalArgumentException if the amount is less than 1 or more than the number of
+   *                                  pixels.
+   */
+  void mosaic(int seedAmnt) throws IllegalArgumentException;
+
+  /**
+   * Applies a mosaic filter to the image, with the seeds picked by a random generator that starts
+   * from the given value, so that the same value always gives the same mosaic.
+   *
+   * @param seedAmnt   the amount of clusters desired.
+   * @param randomSeed the value the random generator starts from.
+   * @throws IllegalArgumentException if the amount is less than 1 or more than the number of
+   *                                  pixels.
+   */
+  void mosaic(int seedAmnt, long randomSeed) throws IllegalArgumentException;
+
+  /**
+   * Applies a mosaic filter made of superpixels: cells of about the same size whose edges follow
+   * the edges in the image, found with SLIC.
+   *
+   * @param count       the number of cells wanted; the actual number may be a little different.
+   * @param iterations  the number of rounds of refining the cells, at least 1.
+   * @param compactness how much the cells keep an even shape instead of following the colors, at
+   *                    least 0.
+   * @throws IllegalArgumentException if a value is out of range, or there are more cells than
+   *                                  pixels.
    */
-  void mosaic(int seedAmnt);
+  void superpixels(int count, int iterations, double compactness)
+          throws IllegalArgumentException;
 }
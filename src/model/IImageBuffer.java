@@ -30,7 +30,8 @@ public interface IImageBuffer {
   void redo();
 
   /**
-   * This method get's the image at the current head.
+   * This method get's the image at the current head. The image is a copy, so changing it doesn't
+   * change the history.
    *
    * @return The image at the head of the array.
    */
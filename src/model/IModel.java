@@ -17,18 +17,101 @@ public interface IModel {
    */
   boolean isLoaded();
 
+  /**
+   * Sets whether effects and filters use fixed-point (integer) arithmetic instead of doubles.
+   * Fixed point is faster; blur and sharpen give exactly the same result, and grayscale, sepia
+   * and custom kernels are at most 1 off in any color. It's off by default.
+   *
+   * @param fixedPoint True to use fixed point, false to use doubles.
+   */
+  void setFixedPoint(boolean fixedPoint);
+
+  /**
+   * Sets whether operations run right away or are only recorded until the pixels are needed. In
+   * lazy mode, operations run when the image is saved, shown, undone or redone, or on
+   * {@link #flush()}, and the recorded operations become one step in the history. Operations that
+   * are followed by a load or generate before that never run at all. Turning lazy mode off runs the
+   * recorded operations.
+   *
+   * @param lazy True to record operations, false to run them right away.
+   */
+  void setLazy(boolean lazy);
+
+  /**
+   * Runs every operation that has been recorded but not run yet.
+   */
+  void flush();
+
   /**
    * Applies a dither filter to the current image.
    */
   void dither();
 
+  /**
+   * Applies a dither filter to the current image, with error diffusion.
+   *
+   * @param color      Whether every color is dithered on its own into 0 or 255, leaving eight
+   *                   colors, instead of the image turning black and white.
+   * @param serpentine Whether every other row is worked on from right to left.
+   */
+  void dither(boolean color, boolean serpentine);
+
+  /**
+   * Turns the current image black and white with an ordered (Bayer) threshold map.
+   *
+   * @param size The size of the threshold map: 2, 4, 8, 16, 32 or 64.
+   * @throws IllegalArgumentException if the size is not one of those.
+   */
+  void ditherOrdered(int size) throws IllegalArgumentException;
+
+  /**
+   * Turns the current image black and white with a blue-noise threshold map.
+   */
+  void ditherBlueNoise();
+
+  /**
+   * Reduces the current image to a palette of a few colors that fit it.
+   *
+   * @param colors The number of colors, from 1 to 256.
+   * @param dither Whether to dither with error diffusion.
+   * @throws IllegalArgumentException if the number of colors is out of range.
+   */
+  void quantize(int colors, boolean dither) throws IllegalArgumentException;
+
   /**
    * Applies a mosaic filter to the current image.
    *
    * @param i the number of seeds desired in the mosaic. The higher the number, the closer to the
    *          original image.
+   * @throws IllegalArgumentException if the number of seeds is less than 1 or more than the
+   *                                  number of pixels.
+   */
+  void mosaic(int i) throws IllegalArgumentException;
+
+  /**
+   * Applies a mosaic filter to the current image, with the seeds picked by a random generator
+   * that starts from the given value, so that the same value always gives the same mosaic.
+   *
+   * @param i          the number of seeds desired in the mosaic.
+   * @param randomSeed the value the random generator starts from.
+   * @throws IllegalArgumentException if the number of seeds is less than 1 or more than the
+   *                                  number of pixels.
+   */
+  void mosaic(int i, long randomSeed) throws IllegalArgumentException;
+
+  /**
+   * Applies a mosaic filter made of superpixels to the current image: cells of about the same size
+   * whose edges follow the edges in the image, found with SLIC.
+   *
+   * @param count       the number of cells wanted; the actual number may be a little different.
+   * @param iterations  the number of rounds of refining the cells, at least 1 (10 is plenty).
+   * @param compactness how much the cells keep an even shape instead of following the colors, at
+   *                    least 0 (100 is a good start).
+   * @throws IllegalArgumentException if a value is out of range, or there are more cells than
+   *                                  pixels.
    */
-  void mosaic(int i);
+  void superpixels(int count, int iterations, double compactness)
+          throws IllegalArgumentException;
 
   /**
    * Applies a sharpen filter to the current image.
@@ -40,6 +123,28 @@ public interface IModel {
    */
   void blur();
 
+  /**
+   * Applies a blur filter with the given radius to the current image. A radius of 1 is the same as
+   * {@link #blur()}.
+   *
+   * @param radius The radius of the blur, at least 1.
+   * @throws IllegalArgumentException if the radius is less than 1.
+   */
+  void blur(int radius) throws IllegalArgumentException;
+
+  /**
+   * Applies a custom kernel to the current image. Kernels whose weights are the product of a
+   * column and a row (such as a Gaussian) are detected and applied as two cheaper 1-D passes.
+   *
+   * @param rows   The number of rows of the kernel.
+   * @param cols   The number of columns of the kernel.
+   * @param values The rows * cols weights of the kernel, row by row.
+   * @param border What the kernel sees past the edges of the image.
+   * @throws IllegalArgumentException if the size is not positive or doesn't match the weights.
+   */
+  void applyKernel(int rows, int cols, double[] values, BorderMode border)
+          throws IllegalArgumentException;
+
   /**
    * Applies a sepia filter to the current image.
    */
@@ -50,6 +155,52 @@ public interface IModel {
    */
   void grayscale();
 
+  /**
+   * Makes the current image brighter or darker by adding the same amount to every color.
+   *
+   * @param amount The amount to add, from -255 to 255.
+   * @throws IllegalArgumentException if the amount is out of range.
+   */
+  void brightness(int amount) throws IllegalArgumentException;
+
+  /**
+   * Changes the contrast of the current image by stretching every color away from middle gray.
+   *
+   * @param factor How much to stretch: 1 changes nothing, 0 makes the image gray.
+   * @throws IllegalArgumentException if the factor is negative.
+   */
+  void contrast(double factor) throws IllegalArgumentException;
+
+  /**
+   * Applies a gamma curve to the current image. A gamma above 1 brightens the mid tones, and a
+   * gamma below 1 darkens them.
+   *
+   * @param gamma The gamma, more than 0.
+   * @throws IllegalArgumentException if the gamma is not more than 0.
+   */
+  void gamma(double gamma) throws IllegalArgumentException;
+
+  /**
+   * Stretches the colors of the current image so that black becomes 0 and white becomes 255, with
+   * a gamma curve in between.
+   *
+   * @param black The value that becomes 0.
+   * @param white The value that becomes 255, greater than black.
+   * @param gamma The gamma of the mid tones, more than 0 (1 for none).
+   * @throws IllegalArgumentException if the values are out of range or out of order.
+   */
+  void levels(int black, int white, double gamma) throws IllegalArgumentException;
+
+  /**
+   * Maps the colors of the current image through a curve made of straight lines between the given
+   * points. The curve stays flat before the first point and after the last.
+   *
+   * @param inputs  The input values of the points, increasing, from 0 to 255.
+   * @param outputs The output values of the points, from 0 to 255.
+   * @throws IllegalArgumentException if the points are missing, out of range or out of order.
+   */
+  void curves(int[] inputs, int[] outputs) throws IllegalArgumentException;
+
   /**
    * Saves the current image to a file specified by the filepath parameter. If the filepath is
    * invalid, an exception will be thrown. A valid filepath includes the file's name, its extension,
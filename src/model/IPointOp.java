@@ -0,0 +1,22 @@
+package model;
+
+/**
+ * This interface represents an operation that changes every pixel based only on its own color,
+ * like grayscale and sepia. Because no pixel depends on its neighbors, several point operations in
+ * a row can be fused: each row is read once, every operation is applied to it in turn, and it's
+ * written back once.
+ */
+interface IPointOp {
+
+  /**
+   * Applies the operation to a row of pixels, in place. The colors that come out must be between
+   * 0 and 255, so the next operation sees exactly what it would see if the row had been written
+   * back to the image in between.
+   *
+   * @param red    The red values of the row.
+   * @param green  The green values of the row.
+   * @param blue   The blue values of the row.
+   * @param length The number of pixels in the row.
+   */
+  void apply(int[] red, int[] green, int[] blue, int length);
+}
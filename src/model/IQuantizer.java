@@ -0,0 +1,19 @@
+package model;
+
+/**
+ * This interface represents the choice of the color a pixel gets when an image is reduced to a
+ * few colors. The color asked for may be out of range, because it includes the error diffused from
+ * the pixels before it.
+ */
+interface IQuantizer {
+
+  /**
+   * Picks the color that replaces a color.
+   *
+   * @param red   The red value, which may be below 0 or above 255.
+   * @param green The green value, which may be below 0 or above 255.
+   * @param blue  The blue value, which may be below 0 or above 255.
+   * @return The new color, as a packed 0xRRGGBB value.
+   */
+  int quantize(int red, int green, int blue);
+}
@@ -0,0 +1,147 @@
+package model;
+
+import java.io.IOException;
+
+/**
+ * This interface represents the pixel storage of an image. A raster knows its dimensions and lets
+ * the image read and write color values either one at a time or a whole row at a time. Colors are
+ * addressed as 0, 1, 2 for red, green and blue. Every value written to a raster is clamped to
+ * 0-255.
+ */
+interface IRaster {
+
+  /**
+   * Getter for the width of the raster.
+   *
+   * @return The width in pixels.
+   */
+  int getWidth();
+
+  /**
+   * Getter for the height of the raster.
+   *
+   * @return The height in pixels.
+   */
+  int getHeight();
+
+  /**
+   * Getter for the way this raster stores its pixels.
+   *
+   * @return The storage mode.
+   */
+  StorageMode getMode();
+
+  /**
+   * Reads one color value of a pixel.
+   *
+   * @param row     The row of the pixel.
+   * @param col     The column of the pixel.
+   * @param channel The color to read (0, 1, 2 for red, green, blue).
+   * @return The color value, between 0-255.
+   */
+  int get(int row, int col, int channel);
+
+  /**
+   * Writes one color value of a pixel. The value is clamped to 0-255.
+   *
+   * @param row     The row of the pixel.
+   * @param col     The column of the pixel.
+   * @param channel The color to write (0, 1, 2 for red, green, blue).
+   * @param value   The new color value.
+   */
+  void set(int row, int col, int channel, int value);
+
+  /**
+   * Reads a pixel as one packed 0xRRGGBB value.
+   *
+   * @param row The row of the pixel.
+   * @param col The column of the pixel.
+   * @return The packed color.
+   */
+  int getRGB(int row, int col);
+
+  /**
+   * Writes a pixel from one packed 0xRRGGBB value.
+   *
+   * @param row The row of the pixel.
+   * @param col The column of the pixel.
+   * @param rgb The packed color.
+   */
+  void setRGB(int row, int col, int rgb);
+
+  /**
+   * Reads one color of a whole row into an array.
+   *
+   * @param row     The row to read.
+   * @param channel The color to read (0, 1, 2 for red, green, blue).
+   * @param dst     The array to read into. It must hold at least width values.
+   */
+  void readRow(int row, int channel, int[] dst);
+
+  /**
+   * Reads all three colors of a whole row into three arrays.
+   *
+   * @param row   The row to read.
+   * @param red   The array to read the red values into.
+   * @param green The array to read the green values into.
+   * @param blue  The array to read the blue values into.
+   */
+  void readRow(int row, int[] red, int[] green, int[] blue);
+
+  /**
+   * Writes all three colors of a whole row. The values are clamped to 0-255.
+   *
+   * @param row   The row to write.
+   * @param red   The new red values.
+   * @param green The new green values.
+   * @param blue  The new blue values.
+   */
+  void writeRow(int row, int[] red, int[] green, int[] blue);
+
+  /**
+   * Reads a whole row as packed 0xRRGGBB values.
+   *
+   * @param row The row to read.
+   * @param dst The array to read into. It must hold at least width values.
+   */
+  void readRowRGB(int row, int[] dst);
+
+  /**
+   * Writes a whole row from packed 0xRRGGBB values.
+   *
+   * @param row The row to write.
+   * @param src The packed colors.
+   */
+  void writeRowRGB(int row, int[] src);
+
+  /**
+   * Creates a deep copy of this raster, using the same storage mode.
+   *
+   * @return The copy.
+   */
+  IRaster copy();
+
+  /**
+   * Saves this raster to an image file.
+   *
+   * @param filename The full path of the file, including its extension.
+   * @throws IOException if the file can't be written.
+   */
+  void write(String filename) throws IOException;
+
+  /**
+   * This helper method makes sure a color value is within the valid bits. In this program it's
+   * between 0-255.
+   *
+   * @param value The value to clamp.
+   * @return The clamped value.
+   */
+  static int clamp(int value) {
+    if (value < 0) {
+      return 0;
+    } else if (value > 255) {
+      return 255;
+    }
+    return value;
+  }
+}
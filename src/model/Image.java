@@ -2,9 +2,10 @@ package model;
 
 import java.awt.image.BufferedImage;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class represents any image that can be displayed on the computer. Once an image has been
@@ -13,9 +14,35 @@ import java.util.Random;
 class Image implements IImage {
 
   /**
-   * This is an array that holds the rgb values for each pixel in the image.
+   * Whether mosaics are made with jump flooding instead of the exact closest-seed search. It's set
+   * with the system property "imagine.jumpflood" and is off by default.
    */
-  private int[][][] data;
+  static final boolean JUMP_FLOOD =
+          Boolean.parseBoolean(System.getProperty("imagine.jumpflood", "false"));
+
+  /**
+   * The matrix that transforms colors to a gray scale. It's shared, so its product tables are only
+   * built once.
+   */
+  private static final ColorMatrix GRAY = new ColorMatrix(new double[][]{
+      {0.2126, 0.7152, 0.0722},
+      {0.2126, 0.7152, 0.0722},
+      {0.2126, 0.7152, 0.0722}});
+
+  /**
+   * The matrix that transforms colors to a sepia scale. It's shared, so its product tables are only
+   * built once.
+   */
+  private static final ColorMatrix SEPIA = new ColorMatrix(new double[][]{
+      {0.393, 0.769, 0.189},
+      {0.349, 0.686, 0.168},
+      {0.272, 0.534, 0.131}});
+
+  /**
+   * This is the raster that holds the rgb values for each pixel in the image. How the values are
+   * laid out in memory depends on its storage mode.
+   */
+  private IRaster data;
 
   /**
    * The height of the image.
@@ -27,6 +54,11 @@ class Image implements IImage {
    */
   private int width;
 
+  /**
+   * Whether effects and filters use fixed-point arithmetic instead of doubles.
+   */
+  private boolean fixedPoint;
+
   /**
    * This constructs an model.Image file by loading an image that already exists. If the file isn't
    * found, an exception will be thrown.
@@ -35,10 +67,23 @@ class Image implements IImage {
    * @throws IllegalArgumentException if the given file is not found.
    */
   public Image(String file) throws IllegalArgumentException {
+    this(file, StorageMode.PACKED);
+  }
+
+  /**
+   * This constructs an model.Image file by loading an image that already exists, storing its pixels
+   * with the given storage mode. If the image is too big for the heap, it's stored off the heap
+   * instead. If the file isn't found, an exception will be thrown.
+   *
+   * @param file the file's name specified as "filename.jpg" or "filename.png", etc.
+   * @param mode the way the pixels are stored in memory.
+   * @throws IllegalArgumentException if the given file is not found.
+   */
+  public Image(String file, StorageMode mode) throws IllegalArgumentException {
     try {
-      this.data = ImageUtil.readImage(file);
-      height = ImageUtil.getHeight(file);
-      width = ImageUtil.getWidth(file);
+      this.data = mode.fitting(ImageUtil.getWidth(file), ImageUtil.getHeight(file)).read(file);
+      height = data.getHeight();
+      width = data.getWidth();
     } catch (IOException e) {
       throw new IllegalArgumentException("Invalid filename: " + file);
     }
@@ -47,51 +92,67 @@ class Image implements IImage {
   /**
    * This constructs an image based on existing image data.
    *
-   * @param pixelData The image data.
+   * @param pixelData The image data as a packed rgb raster of width * height pixels.
    * @param width     The width of the image.
    * @param height    The height of the image.
    */
-  protected Image(int[][][] pixelData, int width, int height) {
-    this.data = pixelData;
-    this.height = height;
-    this.width = width;
+  protected Image(int[] pixelData, int width, int height) {
+    this(new PackedRaster(pixelData, width, height));
+  }
+
+  /**
+   * This constructs an image around an existing raster. The raster is used as is, not copied.
+   *
+   * @param raster The raster holding the pixels.
+   */
+  protected Image(IRaster raster) {
+    this.data = raster;
+    this.height = raster.getHeight();
+    this.width = raster.getWidth();
   }
 
   @Override
   public void save(String filepath) throws IllegalArgumentException {
     try {
-      ImageUtil.writeImage(this.data, width, height, filepath);
+      data.write(filepath);
     } catch (IOException e) {
       throw new IllegalArgumentException("Invalid filepath--did you include the file extension?");
     }
   }
 
+  @Override
+  public void setFixedPoint(boolean fixedPoint) {
+    this.fixedPoint = fixedPoint;
+  }
+
   @Override
   public void toGrayScale() {
-    double[][] gray = new double[3][3];
-    for (int i = 0; i < 3; i++) {
-      gray[i][0] = 0.2126;
-      gray[i][1] = 0.7152;
-      gray[i][2] = 0.0722;
-    }
-    applyEffect(gray);
+    applyPointOps(List.of(grayscaleOp()));
+  }
+
+  /**
+   * Creates the point operation that transforms colors to a gray scale, using the arithmetic
+   * chosen for this image.
+   *
+   * @return The grayscale operation.
+   */
+  IPointOp grayscaleOp() {
+    return GRAY.toPointOp(fixedPoint);
   }
 
   @Override
   public void toSepia() {
-    double[][] sepia = new double[3][3];
-    sepia[0][0] = 0.393;
-    sepia[0][1] = 0.769;
-    sepia[0][2] = 0.189;
-    sepia[1][0] = 0.349;
-    sepia[1][1] = 0.686;
-    sepia[1][2] = 0.168;
-    sepia[2][0] = 0.272;
-    sepia[2][1] = 0.534;
-    sepia[2][2] = 0.131;
-
-    applyEffect(sepia);
+    applyPointOps(List.of(sepiaOp()));
+  }
 
+  /**
+   * Creates the point operation that transforms colors to a sepia scale, using the arithmetic
+   * chosen for this image.
+   *
+   * @return The sepia operation.
+   */
+  IPointOp sepiaOp() {
+    return SEPIA.toPointOp(fixedPoint);
   }
 
   @Override
@@ -115,6 +176,29 @@ class Image implements IImage {
     applyFilter(kernel);
   }
 
+  /**
+   * Blurs this image with the given radius. Radius 1 is the 3x3 blur. Larger radii approximate a
+   * Gaussian blur with a standard deviation of half the radius by three box blurs, which cost the
+   * same per pixel no matter how large the radius is. Pixels past the edges repeat the closest edge
+   * pixel.
+   *
+   * @param radius The radius of the blur, at least 1.
+   * @throws IllegalArgumentException if the radius is less than 1.
+   */
+  @Override
+  public void blur(int radius) throws IllegalArgumentException {
+    if (radius < 1) {
+      throw new IllegalArgumentException("The blur radius must be at least 1");
+    }
+    if (radius == 1) {
+      blur();
+      return;
+    }
+    IRaster scratch = RasterPool.acquire(data);
+    BoxBlur.blur(data, scratch, BoxBlur.radii(radius / 2.0));
+    RasterPool.release(scratch);
+  }
+
   @Override
   public void sharpen() {
 
@@ -124,7 +208,7 @@ class Image implements IImage {
       for (int j = 0; j < 5; j++) {
         if (i == 0 || j == 0 || i == 4 || j == 4) {
           kernel[i][j] = -1.0 / 8.0;
-        } else if ((i > 0 && i < 3) && (j > 0 && j < 4)) {
+        } else if ((i > 0 && i < 4) && (j > 0 && j < 4)) {
           kernel[i][j] = 1.0 / 4.0;
         }
         kernel[2][2] = 1.0;
@@ -134,59 +218,99 @@ class Image implements IImage {
     applyFilter(kernel);
   }
 
+  @Override
+  public void applyKernel(int rows, int cols, double[] values, BorderMode border)
+          throws IllegalArgumentException {
+    applyFilter(new Kernel(rows, cols, values), border);
+  }
+
   @Override
   public void dither() {
-    // because of the most recent lecture, maybe this is a bad idea
-    toGrayScale();
+    dither(false, false);
+  }
 
-    // may get off by 1 error
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        int oldColor = data[i][j][0];
-        int newColor;
-        if (oldColor < 127) {
-          newColor = 0;
-        } else {
-          newColor = 255;
-        }
-        int error = oldColor - newColor;
-        data[i][j][0] = data[i][j][1] = data[i][j][2] = newColor;
+  @Override
+  public void dither(boolean color, boolean serpentine) {
+    if (color) {
+      DitherEngine.dither(data, DitherEngine.EIGHT_COLORS, serpentine, false);
+    } else {
+      toGrayScale();
+      DitherEngine.dither(data, DitherEngine.BLACK_AND_WHITE, serpentine, true);
+    }
+  }
 
-        if (j + 1 < width) {
-          data[i][j + 1][0] += (int) Math.round((7.0 / 16.0) * error);
-        }
-        if (!(i + 1 >= height || j - 1 < 0)) {
-          data[i + 1][j - 1][0] += (int) Math.round((3.0 / 16.0) * error);
-        }
-        if (i + 1 < height) {
-          data[i + 1][j][0] += (int) Math.round((5.0 / 16.0) * error);
-        }
-        if (!(i + 1 >= height || j + 1 >= width)) {
-          data[i + 1][j + 1][0] += (int) Math.round((1.0 / 16.0) * error);
-        }
-      }
+  @Override
+  public void ditherOrdered(int size) throws IllegalArgumentException {
+    int[] thresholds = ThresholdDither.thresholds(ThresholdDither.bayer(size));
+    ThresholdDither.dither(data, thresholds);
+  }
+
+  @Override
+  public void ditherBlueNoise() {
+    int[] thresholds = ThresholdDither.thresholds(ThresholdDither.blueNoise());
+    ThresholdDither.dither(data, thresholds);
+  }
+
+  @Override
+  public void quantize(int colors, boolean dither) throws IllegalArgumentException {
+    Palette palette = Palette.medianCut(data, colors);
+    if (dither) {
+      DitherEngine.dither(data, palette, false, false);
+    } else {
+      palette.apply(data);
     }
   }
 
   @Override
-  public void mosaic(int seedAmnt) {
-    // Gets random seeds based on the amount.
+  public void mosaic(int seedAmnt) throws IllegalArgumentException {
+    mosaic(seedAmnt, new Random(), JUMP_FLOOD);
+  }
 
-    List<Seed> seeds = pickSeeds(seedAmnt);
-    buildClusters(seeds);
+  @Override
+  public void mosaic(int seedAmnt, long randomSeed) throws IllegalArgumentException {
+    mosaic(seedAmnt, new Random(randomSeed), JUMP_FLOOD);
+  }
 
-    // Go through the seeds own assigned lists.
-    for (Seed seed : seeds) {
-      List<int[]> pixelCluster = seed.getList();
+  @Override
+  public void superpixels(int count, int iterations, double compactness)
+          throws IllegalArgumentException {
+    if (count < 1 || count > width * height) {
+      throw new IllegalArgumentException("The number of seeds must be from 1 to the number of "
+              + "pixels");
+    }
+    if (iterations < 1 || !(compactness >= 0) || Double.isInfinite(compactness)) {
+      throw new IllegalArgumentException("Superpixels need at least 1 iteration and a compactness "
+              + "of at least 0");
+    }
+    paintCells(Superpixels.labels(data, count, iterations, compactness),
+            Superpixels.centers(width, height, count));
+  }
 
-      for (int[] pixel : pixelCluster) {
-        data[pixel[0]][pixel[1]][0] = (int) Math.round(seed.getAvgRed());
-        data[pixel[0]][pixel[1]][1] = (int) Math.round(seed.getAvgGreen());
-        data[pixel[0]][pixel[1]][2] = (int) Math.round(seed.getAvgBlue());
-      }
+  /**
+   * Applies a mosaic filter to the image, finding the closest seed of every pixel either exactly
+   * or with jump flooding. Jump flooding runs all its passes in parallel, but a few pixels on the
+   * edges between cells may get a seed that is almost the closest.
+   *
+   * @param seedAmnt  the amount of seeds.
+   * @param rand      the random generator that picks the seeds.
+   * @param jumpFlood true to use jump flooding, false to find the closest seeds exactly.
+   * @throws IllegalArgumentException if the amount is less than 1 or more than the number of
+   *                                  pixels.
+   */
+  void mosaic(int seedAmnt, Random rand, boolean jumpFlood) throws IllegalArgumentException {
+    // Gets random seeds based on the amount.
+    int[] pixels = pickSeeds(seedAmnt, rand);
+    int[] rows = new int[seedAmnt];
+    int[] cols = new int[seedAmnt];
+    for (int k = 0; k < seedAmnt; k++) {
+      rows[k] = pixels[k] / width;
+      cols[k] = pixels[k] % width;
     }
 
-    clamp();
+    int[] labels = jumpFlood
+        ? JumpFlood.labels(rows, cols, height, width)
+        : buildClusters(rows, cols);
+    paintCells(labels, seedAmnt);
   }
 
   /**
@@ -196,16 +320,11 @@ class Image implements IImage {
    */
   protected BufferedImage toBufferedImage() {
     BufferedImage newImg = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    int[] row = new int[width];
 
     for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        int r = data[i][j][0];
-        int g = data[i][j][1];
-        int b = data[i][j][2];
-
-        int color = (r << 16) + (g << 8) + b;
-        newImg.setRGB(j, i, color);
-      }
+      data.readRowRGB(i, row);
+      newImg.setRGB(0, i, width, 1, row, 0, width);
     }
     return newImg;
   }
@@ -213,9 +332,9 @@ class Image implements IImage {
   /**
    * Getter for the data of this image.
    *
-   * @return the image data.
+   * @return the raster holding the image data.
    */
-  protected int[][][] getData() {
+  protected IRaster getData() {
     return this.data;
   }
 
@@ -245,162 +364,159 @@ class Image implements IImage {
    * A helper method for mosaic. It chooses a certain number of random seeds. The more the seeds,
    * the smaller the "panes" of "stained-glass".
    *
+   * <p>
+   * The seeds are picked with Floyd's algorithm, which takes one random number per seed and never
+   * has to try again: for each of the last seedAmnt pixels j in turn, a pixel from 0 to j is
+   * picked, and if it's already a seed, j is taken instead. Every set of pixels is equally likely,
+   * and a bit per pixel keeps track of which ones are seeds.
+   * </p>
+   *
    * @param seedAmnt the amount of seeds.
-   * @return a list of Seed objects that are the randomly picked seeds.
+   * @param rand     the random generator that picks the seeds.
+   * @return the index (row * width + column) of every seed, in the order they were picked.
+   * @throws IllegalArgumentException if the amount is less than 1 or more than the number of
+   *                                  pixels.
    */
-  private List<Seed> pickSeeds(int seedAmnt) {
-    Random rand = new Random();
-    List<Seed> seeds = new ArrayList<>();
-    for (int i = 0; i < seedAmnt; i++) {
-
-      Seed newSeed = new Seed(rand.nextInt(height), rand.nextInt(width));
-      while (seeds.contains(newSeed)) {
-        newSeed = new Seed(rand.nextInt(height), rand.nextInt(width));
+  private int[] pickSeeds(int seedAmnt, Random rand) throws IllegalArgumentException {
+    int count = width * height;
+    if (seedAmnt < 1 || seedAmnt > count) {
+      throw new IllegalArgumentException("The number of seeds must be from 1 to the number of "
+              + "pixels");
+    }
+    BitSet taken = new BitSet(count);
+    int[] seeds = new int[seedAmnt];
+    for (int k = 0, j = count - seedAmnt; j < count; k++, j++) {
+      int pixel = rand.nextInt(j + 1);
+      if (taken.get(pixel)) {
+        pixel = j;
       }
-      seeds.add(newSeed);
+      taken.set(pixel);
+      seeds[k] = pixel;
     }
     return seeds;
   }
 
   /**
-   * A helper method for mosaic which assigns pixels to their clusters (each seed stores a list of
-   * pixels that are in its cluster). It assigns them based on distance. The closest seed to a pixel
-   * has that pixel assigned to it.
+   * A helper method for mosaic which assigns pixels to their clusters. It assigns them based on
+   * distance: the closest seed to a pixel has that pixel assigned to it, found through a
+   * {@link SeedGrid} so that only the seeds near the pixel are looked at. The rows are assigned in
+   * parallel.
    *
-   * @param seeds the list of seeds.
+   * @param rows the row of every seed.
+   * @param cols the column of every seed.
+   * @return the seed of every pixel, row by row.
    */
-  private void buildClusters(List<Seed> seeds) {
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        int seedIndx = 0;
-        double minDist = euclidean(i, j, seeds.get(0).getRow(), seeds.get(0).getCol());
-
-        for (int k = 0; k < seeds.size(); k++) {
-          Seed seed = seeds.get(k);
-          int row = seed.getRow();
-          int col = seed.getCol();
-          double dist = euclidean(i, j, row, col);
-          if (dist < minDist) {
-            minDist = dist;
-            seedIndx = k;
-          }
+  private int[] buildClusters(int[] rows, int[] cols) {
+    SeedGrid grid = new SeedGrid(rows, cols, height, width);
+    int[] labels = new int[width * height];
+    TileExecutor.forEachBand(width, height, (rowStart, rowEnd) -> {
+      for (int i = rowStart; i < rowEnd; i++) {
+        for (int j = 0; j < width; j++) {
+          labels[i * width + j] = grid.nearest(i, j);
         }
-        seeds.get(seedIndx).addPixel(i, j, data[i][j]);
       }
-    }
+    });
+    return labels;
   }
 
   /**
-   * calculates the euclidean distance between two pixels.
+   * A helper method for mosaic which gives every cell the average color of its pixels. Each thread
+   * sums the colors of the rows it takes into its own totals, so nothing is shared until the totals
+   * are added up at the end, and then every pixel is painted with the average of its cell.
    *
-   * @param row1 the row of the first pixel.
-   * @param col1 the column of the first pixel.
-   * @param row2 the row of the second pixel.
-   * @param col2 the column of the second pixel.
-   * @return the euclidean distance between the two pixels.
+   * @param labels the cell of every pixel, row by row.
+   * @param count  the number of cells.
    */
-  private double euclidean(int row1, int col1, int row2, int col2) {
-    return Math.sqrt((row1 - row2) * (row1 - row2) + (col1 - col2) * (col1 - col2));
+  private void paintCells(int[] labels, int count) {
+    // the number of pixels of every cell and the sums of their colors, side by side.
+    long[] sums = new long[4 * count];
+    AtomicInteger nextRow = new AtomicInteger();
+    TileExecutor.forEachWorker((long) width * height, () -> {
+      long[] local = new long[4 * count];
+      int[] row = new int[width];
+      for (int i = nextRow.getAndIncrement(); i < height; i = nextRow.getAndIncrement()) {
+        data.readRowRGB(i, row);
+        int offset = i * width;
+        for (int j = 0; j < width; j++) {
+          int spot = 4 * labels[offset + j];
+          local[spot]++;
+          local[spot + 1] += (row[j] >> 16) & 0xFF;
+          local[spot + 2] += (row[j] >> 8) & 0xFF;
+          local[spot + 3] += row[j] & 0xFF;
+        }
+      }
+      synchronized (sums) {
+        for (int k = 0; k < sums.length; k++) {
+          sums[k] += local[k];
+        }
+      }
+    });
+
+    int[] colors = new int[count];
+    for (int k = 0; k < count; k++) {
+      long pixels = sums[4 * k];
+      for (int h = 1; pixels > 0 && h <= 3; h++) {
+        colors[k] = (colors[k] << 8) | (int) ((2 * sums[4 * k + h] + pixels) / (2 * pixels));
+      }
+    }
+    TileExecutor.forEachBand(width, height, (rowStart, rowEnd) -> {
+      int[] row = new int[width];
+      for (int i = rowStart; i < rowEnd; i++) {
+        int offset = i * width;
+        for (int j = 0; j < width; j++) {
+          row[j] = colors[labels[offset + j]];
+        }
+        data.writeRowRGB(i, row);
+      }
+    });
   }
 
   /**
-   * This method is a helper method for the effects. It applies any matrix to this image. A matrix
-   * consists of a 2D array that is of size 3 x 3.
+   * This method applies point operations to this image, one after the other, in a single pass:
+   * every row is read once, goes through all the operations, and is written back once. Every pixel
+   * only depends on itself, so the rows are split into bands that are worked on in parallel.
    *
-   * @param matrix The matrix to apply.
+   * @param ops The operations to apply, in order.
    */
-  private void applyEffect(double[][] matrix) {
-
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        double newR = data[i][j][0] * matrix[0][0] + data[i][j][1]
-                * matrix[0][1] + data[i][j][2] * matrix[0][2];
-        double newG = data[i][j][0] * matrix[1][0] + data[i][j][1]
-                * matrix[1][1] + data[i][j][2] * matrix[1][2];
-        double newB = data[i][j][0] * matrix[2][0] + data[i][j][1]
-                * matrix[2][1] + data[i][j][2] * matrix[2][2];
-        data[i][j][0] = (int) Math.round(newR);
-        data[i][j][1] = (int) Math.round(newG);
-        data[i][j][2] = (int) Math.round(newB);
+  void applyPointOps(List<IPointOp> ops) {
+    TileExecutor.forEachBand(width, height, (rowStart, rowEnd) -> {
+      int[] red = new int[width];
+      int[] green = new int[width];
+      int[] blue = new int[width];
+
+      for (int i = rowStart; i < rowEnd; i++) {
+        data.readRow(i, red, green, blue);
+        for (IPointOp op : ops) {
+          op.apply(red, green, blue, width);
+        }
+        data.writeRow(i, red, green, blue);
       }
-    }
-
-    clamp();
+    });
   }
 
   /**
    * This method is a helper method for the filters. It applies any kernel given to it to this
-   * image.
+   * image. The result is written into a scratch raster from the pool, which then becomes the data
+   * of this image, and the old data goes back into the pool for the next filter.
    *
    * @param kernel A kernel, a 2D double array.
    */
   private void applyFilter(double[][] kernel) {
-
-    int newR;
-    int newG;
-    int newB;
-
-    // iterate through the image.
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-
-        // get new RGB values
-        newR = getNewColorVal(kernel, i, j, 0);
-        newG = getNewColorVal(kernel, i, j, 1);
-        newB = getNewColorVal(kernel, i, j, 2);
-
-        // apply them
-        data[i][j][0] = newR;
-        data[i][j][1] = newG;
-        data[i][j][2] = newB;
-      }
-    }
-    clamp();
+    applyFilter(new Kernel(kernel), BorderMode.ZERO);
   }
 
   /**
-   * This helper method calculates the actual new number value of a given pixel, based off the
-   * kernel it was given.
+   * This method applies any kernel to this image, with the given border mode deciding what the
+   * kernel sees past the edges of the image. The result is written into a scratch raster from the
+   * pool, which then becomes the data of this image.
    *
-   * @param kernel The kernel passed.
-   * @param i      The row of the pixel.
-   * @param j      The column of the pixel.
-   * @param h      The color of the pixel (0, 1, 2 for red, green, blue)
-   * @return The new value of the pixel.
+   * @param kernel The kernel to apply.
+   * @param border What the kernel sees past the edges of the image.
    */
-  private int getNewColorVal(double[][] kernel, int i, int j, int h) {
-    double newVal = 0;
-
-    // this should be a helper function
-    int kernelBound = (kernel[0].length - 1) / 2;
-    for (int k = -kernelBound; k <= kernelBound; k++) {
-      for (int l = -1; l < 2; l++) {
-        int indxK = i + k;
-        int indxL = j + l;
-
-        if (!((indxK >= height || indxK < 0) || (indxL < 0 || indxL >= width))) {
-          newVal += data[indxK][indxL][h] * kernel[k + kernelBound][l + kernelBound];
-        }
-      }
-    }
-    return (int) Math.round(newVal);
-  }
-
-  /**
-   * This helper method makes sure a pixels color values are within the valid bits. In this program
-   * it's between 0-255.
-   */
-  private void clamp() {
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        for (int k = 0; k < 3; k++) {
-          if (data[i][j][k] < 0) {
-            data[i][j][k] = 0;
-          } else if (data[i][j][k] > 255) {
-            data[i][j][k] = 255;
-          }
-        }
-      }
-    }
+  void applyFilter(Kernel kernel, BorderMode border) {
+    IRaster result = RasterPool.acquire(data);
+    ConvolutionEngine.convolve(data, result, kernel, border, fixedPoint);
+    RasterPool.release(data);
+    data = result;
   }
 }
@@ -1,33 +1,52 @@
 package model;
 
-import java.util.ArrayDeque;
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 /**
  * This is a ring buffer for the Image class in this package.
+ *
+ * <p>
+ * Most steps of the history aren't whole images, only what changed since the step before: the
+ * image is split into bands of rows, and for every band that changed, the old and new pixels are
+ * XOR-ed (leaving zeros wherever nothing changed) and compressed. Every few steps, and whenever
+ * the size of the image changes, a whole copy (a keyframe) is kept instead. The buffer keeps the
+ * pixels of the current step, and XOR-ing a step's changes into them goes either way: forward to
+ * redo and back to undo. So the memory the history takes grows with how much the steps change,
+ * not with the size of the image times the number of steps.
+ * </p>
  */
 public class ImageBuffer implements IImageBuffer {
 
   /**
-   * The index of the head.
+   * The number of steps from one keyframe to the next.
    */
-  private int headIndx;
+  static final int KEYFRAME_INTERVAL = 8;
 
   /**
-   * The index of the tail.
+   * The number of rows in a band.
    */
-  private int tailIndx;
+  private static final int BAND = 16;
 
   /**
-   * The ArrayList acts as the buffer.
+   * The steps of the history, oldest first, including the ones that can be redone.
    */
-  private ArrayList<Image> list;
+  private final List<Snapshot> steps;
 
   /**
-   * This stack keeps track of redo's.
+   * The index of the current step, or -1 if there is none.
    */
-  private ArrayDeque<Image> redoStack;
+  private int head;
+
+  /**
+   * The pixels of the current step, which belong to the buffer.
+   */
+  private IRaster current;
 
   /**
    * The size of the ImageBuffer.
@@ -39,103 +58,278 @@ public class ImageBuffer implements IImageBuffer {
    * 10 indicates that it'll store 10 images before overwriting old ones.
    */
   public ImageBuffer() {
-    headIndx = 0;
-    tailIndx = 0;
-    list = new ArrayList<Image>();
-    redoStack = new ArrayDeque<Image>();
+    steps = new ArrayList<>();
+    head = -1;
+    current = null;
     this.size = 10;
   }
 
   @Override
   public void add(Image img) {
-    // Increase head, then mod by size.
-    Image copy = makeCopy(img);
+    IRaster data = img.getData();
 
-    if (list.size() != 0) {
-      safeHeadIncrement();
+    // Empty redo stack.
+    while (steps.size() > head + 1) {
+      steps.remove(steps.size() - 1);
     }
-    list.add((headIndx), copy);
 
-    // Empty redo stack.
-    while (!redoStack.isEmpty()) {
-      redoStack.pop();
+    boolean resized = current == null || current.getWidth() != data.getWidth()
+            || current.getHeight() != data.getHeight();
+    if (resized || sinceKeyframe() + 1 >= KEYFRAME_INTERVAL) {
+      current = data.copy();
+      steps.add(new Snapshot(data.copy()));
+    } else {
+      steps.add(Snapshot.diff(current, data));
+    }
+    head++;
+
+    // The oldest step is overwritten; the one after it must then stand on its own.
+    if (steps.size() > size) {
+      if (steps.get(1).keyframe == null) {
+        steps.set(1, new Snapshot(rebuild(1)));
+      }
+      steps.remove(0);
+      head--;
     }
   }
 
   @Override
   public void undo() {
     // Means there is some undoing to be done.
-    if (headIndx != tailIndx) {
-      redoStack.push(list.remove(headIndx));
-      if (headIndx == 0) {
-        headIndx = size - 1;
+    if (canUndo()) {
+      Snapshot step = steps.get(head);
+      if (step.keyframe == null) {
+        step.apply(current);
       } else {
-        headIndx--;
+        current = rebuild(head - 1);
       }
+      head--;
     }
   }
 
   @Override
   public void redo() {
-    if (!redoStack.isEmpty()) {
-      safeHeadIncrement();
-      list.add(headIndx, redoStack.pop());
+    if (canRedo()) {
+      Snapshot step = steps.get(head + 1);
+      if (step.keyframe == null) {
+        step.apply(current);
+      } else {
+        current = step.keyframe.copy();
+      }
+      head++;
     }
   }
 
+  /**
+   * This method gets the image at the current head. Every call gives a new copy, so the image can
+   * be changed without changing the history.
+   *
+   * @return A copy of the image at the head.
+   * @throws NoSuchElementException if no image was ever added.
+   */
   @Override
   public Image getImage() throws NoSuchElementException {
-
-    if (list.size() == 0) {
+    if (head < 0) {
       throw new NoSuchElementException("No image was found");
     }
-
-    return list.get(headIndx);
+    return new Image(current.copy());
   }
 
   @Override
   public boolean canUndo() {
-    return headIndx != tailIndx;
+    return head > 0;
   }
 
   @Override
   public boolean canRedo() {
-    return !redoStack.isEmpty();
+    return head < steps.size() - 1;
   }
 
   /**
-   * This helper method helps with incrementing the head safely. By safely, it makes sure the head
-   * never catches up with the tail - it pushes the tail in front of it.
+   * This helper method counts the steps from the last keyframe at or before the head to the head.
+   *
+   * @return The number of steps since that keyframe.
    */
-  private void safeHeadIncrement() {
-    headIndx = (headIndx + 1) % size;
-
-    if ((headIndx) == tailIndx) {
-      tailIndx = (tailIndx + 1) % size;
+  private int sinceKeyframe() {
+    int k = head;
+    while (steps.get(k).keyframe == null) {
+      k--;
     }
+    return head - k;
   }
 
   /**
-   * This helper method creates a copy of an image to store inside the buffer. This works more
-   * complicated than one might think, because it needs to store a deep copy of the array.
+   * This helper method puts together the pixels of a step, starting from the last keyframe at or
+   * before it and applying the changes of every step after that.
    *
-   * @param img The image to copy.
-   * @return The copied image.
+   * @param index The index of the step.
+   * @return The pixels of the step, in a new raster.
+   */
+  private IRaster rebuild(int index) {
+    int k = index;
+    while (steps.get(k).keyframe == null) {
+      k--;
+    }
+    IRaster raster = steps.get(k).keyframe.copy();
+    for (int m = k + 1; m <= index; m++) {
+      steps.get(m).apply(raster);
+    }
+    return raster;
+  }
+
+  /**
+   * This class is one step of the history: either a whole copy of the image, or the compressed
+   * XOR of the bands of rows that changed since the step before.
    */
-  private Image makeCopy(Image img) {
-    int height = img.getHeight();
-    int width = img.getWidth();
-    int[][][] data = img.getData();
-    int[][][] newPic = new int[height][width][3];
-
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        for (int k = 0; k < 3; k++) {
-          newPic[i][j][k] = data[i][j][k];
+  private static final class Snapshot {
+
+    /**
+     * The whole image, or null if this step only keeps what changed.
+     */
+    private final IRaster keyframe;
+
+    /**
+     * The compressed XOR of the old and new pixels of every band, three bytes per pixel, or null
+     * for a band that didn't change.
+     */
+    private final byte[][] bands;
+
+    /**
+     * Constructs a keyframe.
+     *
+     * @param keyframe The whole image, which belongs to the step.
+     */
+    Snapshot(IRaster keyframe) {
+      this.keyframe = keyframe;
+      this.bands = null;
+    }
+
+    /**
+     * Constructs a step that only keeps what changed.
+     *
+     * @param bands The compressed changes of every band.
+     */
+    private Snapshot(byte[][] bands) {
+      this.keyframe = null;
+      this.bands = bands;
+    }
+
+    /**
+     * Computes the changes from one image to the next, and brings the first image up to date.
+     *
+     * @param current The pixels before, which become the pixels after.
+     * @param next    The pixels after, the same size.
+     * @return The step.
+     */
+    static Snapshot diff(IRaster current, IRaster next) {
+      int width = current.getWidth();
+      int height = current.getHeight();
+      byte[][] bands = new byte[(height + BAND - 1) / BAND][];
+      TileExecutor.forEachBand(width * BAND, bands.length, (bandStart, bandEnd) -> {
+        int[] before = new int[width];
+        int[] after = new int[width];
+        byte[] xor = new byte[3 * width * BAND];
+        for (int b = bandStart; b < bandEnd; b++) {
+          int rowStart = b * BAND;
+          int rowEnd = Math.min(height, rowStart + BAND);
+          boolean changed = false;
+          for (int i = rowStart; i < rowEnd; i++) {
+            current.readRowRGB(i, before);
+            next.readRowRGB(i, after);
+            int offset = 3 * width * (i - rowStart);
+            int rowBits = 0;
+            for (int j = 0; j < width; j++) {
+              int bits = before[j] ^ after[j];
+              rowBits |= bits;
+              xor[offset + 3 * j] = (byte) (bits >> 16);
+              xor[offset + 3 * j + 1] = (byte) (bits >> 8);
+              xor[offset + 3 * j + 2] = (byte) bits;
+            }
+            if (rowBits != 0) {
+              current.writeRowRGB(i, after);
+              changed = true;
+            }
+          }
+          if (changed) {
+            bands[b] = compress(xor, 3 * width * (rowEnd - rowStart));
+          }
         }
+      });
+      return new Snapshot(bands);
+    }
+
+    /**
+     * XORs the changes of this step into some pixels, which turns the pixels before the step into
+     * the pixels after it, and the pixels after it back into the pixels before.
+     *
+     * @param raster The pixels, which are changed in place.
+     */
+    void apply(IRaster raster) {
+      int width = raster.getWidth();
+      int height = raster.getHeight();
+      TileExecutor.forEachBand(width * BAND, bands.length, (bandStart, bandEnd) -> {
+        int[] row = new int[width];
+        byte[] xor = new byte[3 * width * BAND];
+        for (int b = bandStart; b < bandEnd; b++) {
+          if (bands[b] == null) {
+            continue;
+          }
+          int rowStart = b * BAND;
+          int rowEnd = Math.min(height, rowStart + BAND);
+          decompress(bands[b], xor, 3 * width * (rowEnd - rowStart));
+          for (int i = rowStart; i < rowEnd; i++) {
+            raster.readRowRGB(i, row);
+            int offset = 3 * width * (i - rowStart);
+            for (int j = 0; j < width; j++) {
+              row[j] ^= (xor[offset + 3 * j] & 0xFF) << 16 | (xor[offset + 3 * j + 1] & 0xFF) << 8
+                  | (xor[offset + 3 * j + 2] & 0xFF);
+            }
+            raster.writeRowRGB(i, row);
+          }
+        }
+      });
+    }
+
+    /**
+     * This helper method compresses bytes with Deflate, favoring speed.
+     *
+     * @param bytes  The bytes.
+     * @param length The number of bytes to compress.
+     * @return The compressed bytes.
+     */
+    private static byte[] compress(byte[] bytes, int length) {
+      Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+      deflater.setInput(bytes, 0, length);
+      deflater.finish();
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] chunk = new byte[8192];
+      while (!deflater.finished()) {
+        out.write(chunk, 0, deflater.deflate(chunk));
       }
+      deflater.end();
+      return out.toByteArray();
     }
 
-    return new Image(newPic, width, height);
+    /**
+     * This helper method decompresses bytes compressed by {@link #compress(byte[], int)}.
+     *
+     * @param compressed The compressed bytes.
+     * @param bytes      Where to put the bytes.
+     * @param length     The number of bytes there are.
+     */
+    private static void decompress(byte[] compressed, byte[] bytes, int length) {
+      Inflater inflater = new Inflater();
+      inflater.setInput(compressed);
+      try {
+        int done = 0;
+        while (done < length) {
+          done += inflater.inflate(bytes, done, length - done);
+        }
+      } catch (DataFormatException e) {
+        throw new IllegalStateException("A step of the history is corrupted", e);
+      } finally {
+        inflater.end();
+      }
+    }
   }
-}
\ No newline at end of file
+}
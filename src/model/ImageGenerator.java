@@ -1,6 +1,7 @@
 package model;
 
 import java.awt.Color;
+import java.util.Arrays;
 
 /**
  * This class represents the creation of one image. It has methods to generate, add and color
@@ -10,10 +11,10 @@ import java.awt.Color;
 class ImageGenerator implements IImageGenerator {
 
   /**
-   * A 3D int array that represents the image. The outer array is rows, middles is column, and inner
-   * is the 3 RGB values.
+   * A packed raster that represents the image. Pixels are stored row by row, one int per pixel with
+   * the rgb values packed as 0xRRGGBB.
    */
-  private int[][][] data;
+  private int[] data;
 
   /**
    * An integer denoting the height of the image to be generated.
@@ -25,6 +26,11 @@ class ImageGenerator implements IImageGenerator {
    */
   private int width;
 
+  /**
+   * The storage mode of the images this generator creates.
+   */
+  private final StorageMode mode;
+
   /**
    * This method creates the model.ImageGenerator object. The model.ImageGenerator can draw flags,
    * checkerboards and other shapes and patterns.
@@ -33,18 +39,23 @@ class ImageGenerator implements IImageGenerator {
    * @param height The height of the object.
    */
   public ImageGenerator(int width, int height) {
+    this(width, height, StorageMode.PACKED);
+  }
 
-    data = new int[height][width][3];
+  /**
+   * This method creates the model.ImageGenerator object, which creates images that store their
+   * pixels with the given storage mode.
+   *
+   * @param width  The width of the object.
+   * @param height The height of the object.
+   * @param mode   The storage mode of the generated images.
+   */
+  public ImageGenerator(int width, int height, StorageMode mode) {
+
+    data = new int[height * width];
     this.height = height;
     this.width = width;
-
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        this.data[i][j][0] = 0;
-        this.data[i][j][1] = 0;
-        this.data[i][j][2] = 0;
-      }
-    }
+    this.mode = mode;
   }
 
   @Override
@@ -140,12 +151,22 @@ class ImageGenerator implements IImageGenerator {
    */
 
   /**
-   * Converts the generated image to an model.Image object.
+   * Converts the generated image to an model.Image object, using the storage mode of this
+   * generator.
    *
    * @return an model.Image object.
    */
   private Image toImg() {
-    return new Image(data, width, height);
+    if (mode == StorageMode.PACKED) {
+      return new Image(data, width, height);
+    }
+    IRaster raster = mode.create(width, height);
+    int[] row = new int[width];
+    for (int i = 0; i < height; i++) {
+      System.arraycopy(data, i * width, row, 0, width);
+      raster.writeRowRGB(i, row);
+    }
+    return new Image(raster);
   }
 
   /**
@@ -158,7 +179,7 @@ class ImageGenerator implements IImageGenerator {
   private void setCanvasSize(int width, int height) {
     this.height = height;
     this.width = width;
-    this.data = new int[height][width][3];
+    this.data = new int[height * width];
   }
 
   /**
@@ -220,12 +241,11 @@ class ImageGenerator implements IImageGenerator {
    * @param color  The color of the rectangle.
    */
   private void drawRectangle(double rStart, double rEnd, double cStart, double cEnd, Color color) {
+    int rgb = color.getRGB() & 0xFFFFFF;
+    int colStart = (int) Math.round(cStart);
+    int colEnd = (int) Math.round(cEnd);
     for (int i = (int) Math.round(rStart); i < (int) Math.round(rEnd); i++) {
-      for (int j = (int) Math.round(cStart); j < (int) Math.round(cEnd); j++) {
-        data[i][j][0] = color.getRed();
-        data[i][j][1] = color.getGreen();
-        data[i][j][2] = color.getBlue();
-      }
+      Arrays.fill(data, i * width + colStart, i * width + colEnd, rgb);
     }
   }
 
@@ -237,12 +257,6 @@ class ImageGenerator implements IImageGenerator {
    * @param b The blue value of the color.
    */
   private void fillCanvas(int r, int g, int b) {
-    for (int i = 0; i < height; i++) {
-      for (int j = 0; j < width; j++) {
-        data[i][j][0] = r;
-        data[i][j][1] = g;
-        data[i][j][2] = b;
-      }
-    }
+    Arrays.fill(data, (r << 16) | (g << 8) | b);
   }
 }
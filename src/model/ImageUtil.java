@@ -1,12 +1,19 @@
 package model;
 
-import java.awt.Color;
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Iterator;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
 
 /**
  * This class contains utility methods to read an image from file and write to a file.
@@ -14,33 +21,120 @@ import javax.imageio.ImageIO;
 public class ImageUtil {
 
   /**
-   * Read an image file and return the contents as an array.
+   * Read an image file and return the contents as a packed raster. Pixels are stored row by row,
+   * one int per pixel, with red, green and blue in bits 16-23, 8-15 and 0-7 respectively (the same
+   * layout as BufferedImage.TYPE_INT_RGB).
    *
    * @param filename the path of the file. Look at the ImageIO documentation to see which file
    *                 formats are supported.
-   * @return the image as a 3D array of integer values
+   * @return the image as a packed array of width * height rgb values
    */
-  public static int[][][] readImage(String filename) throws IOException {
+  public static int[] readImage(String filename) throws IOException {
     BufferedImage input;
 
     input = ImageIO.read(new FileInputStream(filename));
 
-    int[][][] result = new int[input.getHeight()][input.getWidth()][3];
+    int width = input.getWidth();
+    int height = input.getHeight();
+    int[] result = input.getRGB(0, 0, width, height, null, 0, width);
 
-    for (int i = 0; i < input.getHeight(); i++) {
-      for (int j = 0; j < input.getWidth(); j++) {
-        int color = input.getRGB(j, i);
-        Color c = new Color(color);
-        result[i][j][0] = c.getRed();
-        result[i][j][1] = c.getGreen();
-        result[i][j][2] = c.getBlue();
-      }
+    // getRGB returns ARGB, the alpha is not part of the raster.
+    for (int i = 0; i < result.length; i++) {
+      result[i] &= 0xFFFFFF;
     }
     return result;
   }
 
   /**
-   * Convenience function to get the width of an image.
+   * Read an image file and return the contents as three byte planes. The planes hold the red, green
+   * and blue values respectively, each one byte per pixel, row by row.
+   *
+   * @param filename the path of the file. Look at the ImageIO documentation to see which file
+   *                 formats are supported.
+   * @return the image as an array of three planes of width * height bytes
+   * @throws IOException if the file is not found
+   */
+  public static byte[][] readImagePlanar(String filename) throws IOException {
+    BufferedImage input;
+
+    input = ImageIO.read(new FileInputStream(filename));
+
+    int width = input.getWidth();
+    int height = input.getHeight();
+    byte[][] planes = new byte[3][width * height];
+    int[] row = new int[width];
+
+    for (int i = 0; i < height; i++) {
+      input.getRGB(0, i, width, 1, row, 0, width);
+      int start = i * width;
+      for (int j = 0; j < width; j++) {
+        planes[0][start + j] = (byte) (row[j] >> 16);
+        planes[1][start + j] = (byte) (row[j] >> 8);
+        planes[2][start + j] = (byte) row[j];
+      }
+    }
+    return planes;
+  }
+
+  /**
+   * This interface receives the rows of an image that is read with
+   * {@link #readImageRows(String, RowConsumer)}.
+   */
+  public interface RowConsumer {
+
+    /**
+     * Receives one row of the image.
+     *
+     * @param row the index of the row
+     * @param rgb the row as packed rgb values, as described in {@link #readImage(String)}. The
+     *            array is reused for the next row.
+     */
+    void accept(int row, int[] rgb);
+  }
+
+  /**
+   * Read an image file band by band and hand it over one row at a time. Only one band of the
+   * image is decoded onto the heap at once, so images that are bigger than the heap can be read.
+   *
+   * @param filename the path of the file. Look at the ImageIO documentation to see which file
+   *                 formats are supported.
+   * @param consumer receives every row of the image, from top to bottom
+   * @throws IOException if the file is not found or can't be decoded
+   */
+  public static void readImageRows(String filename, RowConsumer consumer) throws IOException {
+    try (ImageInputStream stream = new FileImageInputStream(new File(filename))) {
+      ImageReader reader = getReader(stream);
+      try {
+        int width = reader.getWidth(0);
+        int height = reader.getHeight(0);
+
+        // a band takes up at most a sixteenth of the heap.
+        long budget = Runtime.getRuntime().maxMemory() / 16;
+        int bandHeight = (int) Math.max(1, Math.min(height, budget / (4L * Math.max(1, width))));
+        int[] row = new int[width];
+
+        for (int top = 0; top < height; top += bandHeight) {
+          int rows = Math.min(bandHeight, height - top);
+          ImageReadParam param = reader.getDefaultReadParam();
+          param.setSourceRegion(new Rectangle(0, top, width, rows));
+          BufferedImage band = reader.read(0, param);
+
+          for (int i = 0; i < rows; i++) {
+            band.getRGB(0, i, width, 1, row, 0, width);
+            for (int j = 0; j < width; j++) {
+              row[j] &= 0xFFFFFF;
+            }
+            consumer.accept(top + i, row);
+          }
+        }
+      } finally {
+        reader.dispose();
+      }
+    }
+  }
+
+  /**
+   * Convenience function to get the width of an image. Only the header of the file is read.
    *
    * @param filename the full path of the image file. Look at the ImageIO class to see which file
    *                 formats are supported
@@ -49,15 +143,18 @@ public class ImageUtil {
    */
 
   public static int getWidth(String filename) throws IOException {
-    BufferedImage input;
-
-    input = ImageIO.read(new FileInputStream(filename));
-
-    return input.getWidth();
+    try (ImageInputStream stream = new FileImageInputStream(new File(filename))) {
+      ImageReader reader = getReader(stream);
+      try {
+        return reader.getWidth(0);
+      } finally {
+        reader.dispose();
+      }
+    }
   }
 
   /**
-   * Convenience function to get the height of an image.
+   * Convenience function to get the height of an image. Only the header of the file is read.
    *
    * @param filename the full path of the image file. Look at the ImageIO class to see which file
    *                 formats are supported
@@ -65,25 +162,28 @@ public class ImageUtil {
    * @throws IOException if the file is not found
    */
   public static int getHeight(String filename) throws IOException {
-    BufferedImage input;
-
-    input = ImageIO.read(new FileInputStream(filename));
-
-    return input.getHeight();
+    try (ImageInputStream stream = new FileImageInputStream(new File(filename))) {
+      ImageReader reader = getReader(stream);
+      try {
+        return reader.getHeight(0);
+      } finally {
+        reader.dispose();
+      }
+    }
   }
 
   /**
    * Write an image to a file in a given format.
    *
-   * @param rgb      the image data as a 3D array of integers. The dimensions are row, col and
-   *                 channel respectively
+   * @param rgb      the image data as a packed raster, row by row, with each pixel stored in one
+   *                 integer as described in {@link #readImage(String)}
    * @param width    the width of the image
    * @param height   the height of the image
    * @param filename the full path of where the image must be stored. This should include the name
    *                 and extension of the file
    * @throws IOException if the file cannot be written to the provided path
    */
-  public static void writeImage(int[][][] rgb, int width, int height, String
+  public static void writeImage(int[] rgb, int width, int height, String
           filename)
           throws IOException {
 
@@ -92,20 +192,72 @@ public class ImageUtil {
             height,
             BufferedImage.TYPE_INT_RGB);
 
+    //color is stored in 1 integer, with the 4 bytes storing ARGB in that
+    //order. The raster already uses this layout, so it's copied in one go.
+    output.setRGB(0, 0, width, height, rgb, 0, width);
+    String extension = filename.substring(filename.indexOf(".") + 1);
+    ImageIO.write(output, extension, new FileOutputStream(filename));
+  }
+
+  /**
+   * Write an image stored as three byte planes to a file in a given format.
+   *
+   * @param planes   the red, green and blue planes, each holding one byte per pixel, row by row
+   * @param width    the width of the image
+   * @param height   the height of the image
+   * @param filename the full path of where the image must be stored. This should include the name
+   *                 and extension of the file
+   * @throws IOException if the file cannot be written to the provided path
+   */
+  public static void writeImage(byte[][] planes, int width, int height, String filename)
+          throws IOException {
+
+    BufferedImage output = new BufferedImage(
+            width,
+            height,
+            BufferedImage.TYPE_INT_RGB);
+    int[] row = new int[width];
+
     for (int i = 0; i < height; i++) {
+      int start = i * width;
       for (int j = 0; j < width; j++) {
-        int r = rgb[i][j][0];
-        int g = rgb[i][j][1];
-        int b = rgb[i][j][2];
-
-        //color is stored in 1 integer, with the 4 bytes storing ARGB in that
-        //order. Each of r,g,b are stored in 8 bits (hence between 0 and 255).
-        // So we put them all in one integer by using bit-shifting << as below
-        int color = (r << 16) + (g << 8) + b;
-        output.setRGB(j, i, color);
+        row[j] = ((planes[0][start + j] & 0xFF) << 16) | ((planes[1][start + j] & 0xFF) << 8)
+                | (planes[2][start + j] & 0xFF);
       }
+      output.setRGB(0, i, width, 1, row, 0, width);
     }
     String extension = filename.substring(filename.indexOf(".") + 1);
     ImageIO.write(output, extension, new FileOutputStream(filename));
   }
+
+  /**
+   * Write any rendered image to a file in a given format. Writers that support it ask the image
+   * for its pixels a part at a time, so the image doesn't have to be copied onto the heap first.
+   *
+   * @param image    the image to write
+   * @param filename the full path of where the image must be stored. This should include the name
+   *                 and extension of the file
+   * @throws IOException if the file cannot be written to the provided path
+   */
+  public static void writeImage(RenderedImage image, String filename) throws IOException {
+    String extension = filename.substring(filename.indexOf(".") + 1);
+    ImageIO.write(image, extension, new FileOutputStream(filename));
+  }
+
+  /**
+   * This helper method finds a reader for an image stream and points it at the stream.
+   *
+   * @param stream the stream holding the image
+   * @return a reader ready to read the stream
+   * @throws IOException if the format of the image isn't supported
+   */
+  private static ImageReader getReader(ImageInputStream stream) throws IOException {
+    Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+    if (!readers.hasNext()) {
+      throw new IOException("Unsupported image format");
+    }
+    ImageReader reader = readers.next();
+    reader.setInput(stream);
+    return reader;
+  }
 }
@@ -0,0 +1,110 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * This class labels every pixel with its closest seed using jump flooding. The seeds start out
+ * labeling only their own pixels. In each pass, every pixel looks at the labels of the eight
+ * pixels a step away from it (and its own), and keeps whichever of those seeds is closest. The
+ * step starts at half the size of the image and is halved every pass, so labels spread over the
+ * whole image in about log2(size) passes.
+ *
+ * <p>
+ * A pass only reads the labels of the pass before it, so every pixel of a pass is independent and
+ * the rows are worked on in parallel. The result is the same for any number of threads. Jump
+ * flooding is not exact: a few pixels on the edges between cells can end up with a seed that is
+ * almost, but not quite, the closest. An extra pass with a step of 1 before the others (1+JFA)
+ * fixes most of them.
+ * </p>
+ */
+final class JumpFlood {
+
+  /**
+   * This class only has static methods, so it can't be constructed.
+   */
+  private JumpFlood() {
+  }
+
+  /**
+   * Labels every pixel with the seed closest to it.
+   *
+   * @param rows   The row of every seed.
+   * @param cols   The column of every seed.
+   * @param height The height of the image.
+   * @param width  The width of the image.
+   * @return The seed of every pixel, row by row.
+   * @throws IllegalArgumentException if there are no seeds, or not as many rows as columns.
+   */
+  static int[] labels(int[] rows, int[] cols, int height, int width)
+          throws IllegalArgumentException {
+    if (rows.length == 0 || rows.length != cols.length) {
+      throw new IllegalArgumentException(
+              "There must be at least one seed, with a row and a column");
+    }
+    int[] labels = new int[width * height];
+    Arrays.fill(labels, -1);
+    // going backwards leaves the lowest seed on a pixel that has more than one.
+    for (int k = rows.length - 1; k >= 0; k--) {
+      labels[rows[k] * width + cols[k]] = k;
+    }
+    int[] next = new int[width * height];
+
+    int largest = Integer.highestOneBit(Math.max(1, Math.max(width, height) - 1));
+    int passes = Integer.numberOfTrailingZeros(largest) + 2;
+    for (int pass = 0; pass < passes; pass++) {
+      int step = pass == 0 ? 1 : largest >> (pass - 1);
+      int[] current = labels;
+      int[] result = next;
+      TileExecutor.forEachBand(width, height, (rowStart, rowEnd) ->
+              flood(current, result, rows, cols, width, height, step, rowStart, rowEnd));
+      next = labels;
+      labels = result;
+    }
+    return labels;
+  }
+
+  /**
+   * This helper method runs one pass of jump flooding on a band of rows.
+   *
+   * @param current  The labels before the pass.
+   * @param result   The labels after the pass, which are written.
+   * @param rows     The row of every seed.
+   * @param cols     The column of every seed.
+   * @param width    The width of the image.
+   * @param height   The height of the image.
+   * @param step     How far away the pixels that are looked at are.
+   * @param rowStart The first row of the band.
+   * @param rowEnd   The row after the last row of the band.
+   */
+  private static void flood(int[] current, int[] result, int[] rows, int[] cols, int width,
+                            int height, int step, int rowStart, int rowEnd) {
+    for (int i = rowStart; i < rowEnd; i++) {
+      int top = i < step ? i : i - step;
+      int bottom = i + step < height ? i + step : i;
+      for (int j = 0; j < width; j++) {
+        int left = j < step ? j : j - step;
+        int right = j + step < width ? j + step : j;
+        int best = -1;
+        long bestDistance = Long.MAX_VALUE;
+        for (int y = top; y <= bottom; y += step) {
+          int offset = y * width;
+          for (int x = left; x <= right; x += step) {
+            int seed = current[offset + x];
+            // neighbors mostly share a seed, which only needs to be looked at once.
+            if (seed < 0 || seed == best) {
+              continue;
+            }
+            long dr = rows[seed] - i;
+            long dc = cols[seed] - j;
+            long distance = dr * dr + dc * dc;
+            if (distance < bestDistance || (distance == bestDistance && seed < best)) {
+              bestDistance = distance;
+              best = seed;
+            }
+          }
+        }
+        result[i * width + j] = best;
+      }
+    }
+  }
+}
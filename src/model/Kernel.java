@@ -0,0 +1,203 @@
+package model;
+
+/**
+ * This class represents a kernel that can be convolved with an image. A kernel is a grid of
+ * weights with any number of rows and columns. The pixel being filtered sits under the center of
+ * the kernel (for an even size, the cell just before the middle).
+ */
+final class Kernel {
+
+  /**
+   * How far (relative to the largest weight) a weight may be from the product of its column and
+   * row weight for the kernel to still count as separable.
+   */
+  private static final double SEPARABLE_TOLERANCE = 1e-9;
+
+  /**
+   * The largest number of non-zero weights a kernel may have to be applied in fixed point. Beyond
+   * that the rounding of the weights could add up to more than a difference of 1.
+   */
+  private static final int MAX_FIXED_POINT_TAPS = 256;
+
+  /**
+   * The weights, row by row.
+   */
+  private final double[] values;
+
+  /**
+   * The number of rows.
+   */
+  private final int rows;
+
+  /**
+   * The number of columns.
+   */
+  private final int cols;
+
+  /**
+   * Constructs a kernel from a grid of weights. The grid is copied.
+   *
+   * @param grid The weights, as an array of rows that all have the same length.
+   * @throws IllegalArgumentException if the grid is empty or not rectangular.
+   */
+  Kernel(double[][] grid) throws IllegalArgumentException {
+    if (grid.length == 0 || grid[0].length == 0) {
+      throw new IllegalArgumentException("A kernel needs at least one row and one column");
+    }
+    this.rows = grid.length;
+    this.cols = grid[0].length;
+    this.values = new double[rows * cols];
+    for (int i = 0; i < rows; i++) {
+      if (grid[i].length != cols) {
+        throw new IllegalArgumentException("Every row of a kernel must have the same length");
+      }
+      System.arraycopy(grid[i], 0, values, i * cols, cols);
+    }
+  }
+
+  /**
+   * Constructs a kernel from its weights listed row by row. The array is copied.
+   *
+   * @param rows   The number of rows.
+   * @param cols   The number of columns.
+   * @param values The rows * cols weights, row by row.
+   * @throws IllegalArgumentException if the size is not positive or doesn't match the weights.
+   */
+  Kernel(int rows, int cols, double[] values) throws IllegalArgumentException {
+    if (rows < 1 || cols < 1) {
+      throw new IllegalArgumentException("A kernel needs at least one row and one column");
+    }
+    if (values.length != rows * cols) {
+      throw new IllegalArgumentException("A " + rows + "x" + cols + " kernel needs "
+              + rows * cols + " values");
+    }
+    this.rows = rows;
+    this.cols = cols;
+    this.values = values.clone();
+  }
+
+  /**
+   * Getter for the number of rows.
+   *
+   * @return The number of rows.
+   */
+  int getRows() {
+    return rows;
+  }
+
+  /**
+   * Getter for the number of columns.
+   *
+   * @return The number of columns.
+   */
+  int getCols() {
+    return cols;
+  }
+
+  /**
+   * Getter for the number of rows above the center of the kernel.
+   *
+   * @return The row of the center.
+   */
+  int getAnchorRow() {
+    return (rows - 1) / 2;
+  }
+
+  /**
+   * Getter for the number of columns left of the center of the kernel.
+   *
+   * @return The column of the center.
+   */
+  int getAnchorCol() {
+    return (cols - 1) / 2;
+  }
+
+  /**
+   * Getter for all the weights.
+   *
+   * @return A copy of the weights, row by row.
+   */
+  double[] getValues() {
+    return values.clone();
+  }
+
+  /**
+   * Getter for one weight.
+   *
+   * @param row The row of the weight.
+   * @param col The column of the weight.
+   * @return The weight.
+   */
+  double get(int row, int col) {
+    return values[row * cols + col];
+  }
+
+  /**
+   * Tries to split this kernel into a column and a row, so that every weight is the product of its
+   * column weight and its row weight (the kernel has rank 1). A separable kernel can be applied as
+   * two 1-D passes, which costs rows + cols operations per pixel instead of rows * cols.
+   *
+   * @return The column weights and the row weights, in that order, or null if the kernel isn't
+   *         separable.
+   */
+  double[][] separate() {
+    // pivot on the largest weight, so the division below is as exact as it can be.
+    int pivot = 0;
+    for (int i = 1; i < values.length; i++) {
+      if (Math.abs(values[i]) > Math.abs(values[pivot])) {
+        pivot = i;
+      }
+    }
+    double largest = Math.abs(values[pivot]);
+    if (largest == 0) {
+      return null;
+    }
+    int pivotRow = pivot / cols;
+    int pivotCol = pivot % cols;
+
+    double[] column = new double[rows];
+    double[] row = new double[cols];
+    for (int i = 0; i < rows; i++) {
+      column[i] = get(i, pivotCol);
+    }
+    for (int j = 0; j < cols; j++) {
+      row[j] = get(pivotRow, j) / values[pivot];
+    }
+
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < cols; j++) {
+        if (Math.abs(column[i] * row[j] - get(i, j)) > largest * SEPARABLE_TOLERANCE) {
+          return null;
+        }
+      }
+    }
+    return new double[][]{column, row};
+  }
+
+  /**
+   * Converts the weights of this kernel to fixed point (see {@link FixedPoint}), so it can be
+   * applied with integer instructions only.
+   *
+   * @return The weights in fixed point, row by row, or null if the kernel has too many weights or
+   *         weights so large that the sums could overflow an int.
+   */
+  int[] toFixedPoint() {
+    int[] result = new int[values.length];
+    int taps = 0;
+    long largestSum = FixedPoint.HALF;
+    for (int i = 0; i < values.length; i++) {
+      if (Math.abs(values[i]) > Integer.MAX_VALUE >> FixedPoint.SHIFT) {
+        return null;
+      }
+      result[i] = FixedPoint.of(values[i]);
+      if (result[i] != 0) {
+        taps++;
+        largestSum += 255L * Math.abs(result[i]);
+      }
+    }
+    if (taps > MAX_FIXED_POINT_TAPS || largestSum > Integer.MAX_VALUE) {
+      return null;
+    }
+    return result;
+  }
+}
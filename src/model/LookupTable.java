@@ -0,0 +1,210 @@
+package model;
+
+/**
+ * This class represents a tone adjustment as a lookup table: for every channel, the new value of
+ * each of the 256 possible old values. Applying it is one table lookup per color of a pixel, with
+ * no arithmetic at all. Two tables in a row can be composed into one table, so any number of tone
+ * adjustments in a row cost a single lookup.
+ */
+final class LookupTable implements IPointOp {
+
+  /**
+   * The number of values a color can have.
+   */
+  private static final int LEVELS = 256;
+
+  /**
+   * The new value of every old value, by channel (red, green, blue).
+   */
+  private final int[][] tables;
+
+  /**
+   * Constructs a lookup table from its per-channel tables. The tables are used as is.
+   *
+   * @param tables The new value of every old value, by channel.
+   */
+  private LookupTable(int[][] tables) {
+    this.tables = tables;
+  }
+
+  /**
+   * This helper method builds a lookup table that does the same thing to every channel.
+   *
+   * @param table The new value of every old value, which are clamped to [0, 255].
+   * @return The lookup table.
+   */
+  private static LookupTable ofAllChannels(int[] table) {
+    for (int v = 0; v < LEVELS; v++) {
+      table[v] = IRaster.clamp(table[v]);
+    }
+    return new LookupTable(new int[][]{table, table.clone(), table.clone()});
+  }
+
+  /**
+   * Creates a table that makes the image brighter or darker by adding the same amount to every
+   * color.
+   *
+   * @param amount The amount to add, from -255 to 255.
+   * @return The lookup table.
+   * @throws IllegalArgumentException if the amount is out of range.
+   */
+  static LookupTable brightness(int amount) throws IllegalArgumentException {
+    if (amount < -255 || amount > 255) {
+      throw new IllegalArgumentException("Brightness must be between -255 and 255");
+    }
+    int[] table = new int[LEVELS];
+    for (int v = 0; v < LEVELS; v++) {
+      table[v] = v + amount;
+    }
+    return ofAllChannels(table);
+  }
+
+  /**
+   * Creates a table that stretches (or squeezes) every color away from (or towards) the middle
+   * gray 128.
+   *
+   * @param factor How much to stretch: 1 changes nothing, 0 makes everything gray, more than 1
+   *               adds contrast.
+   * @return The lookup table.
+   * @throws IllegalArgumentException if the factor is negative or not a number.
+   */
+  static LookupTable contrast(double factor) throws IllegalArgumentException {
+    if (!(factor >= 0) || Double.isInfinite(factor)) {
+      throw new IllegalArgumentException("Contrast must be a number of at least 0");
+    }
+    int[] table = new int[LEVELS];
+    for (int v = 0; v < LEVELS; v++) {
+      table[v] = (int) Math.round((v - 128) * factor + 128);
+    }
+    return ofAllChannels(table);
+  }
+
+  /**
+   * Creates a table that applies a gamma curve: every color v becomes 255 * (v / 255)^(1 /
+   * gamma). Black and white stay the same; a gamma above 1 brightens the mid tones, below 1 darkens
+   * them.
+   *
+   * @param gamma The gamma, more than 0.
+   * @return The lookup table.
+   * @throws IllegalArgumentException if the gamma is not more than 0.
+   */
+  static LookupTable gamma(double gamma) throws IllegalArgumentException {
+    if (!(gamma > 0) || Double.isInfinite(gamma)) {
+      throw new IllegalArgumentException("Gamma must be a number greater than 0");
+    }
+    int[] table = new int[LEVELS];
+    for (int v = 0; v < LEVELS; v++) {
+      table[v] = (int) Math.round(255 * Math.pow(v / 255.0, 1 / gamma));
+    }
+    return ofAllChannels(table);
+  }
+
+  /**
+   * Creates a table that maps the input range [black, white] onto the full range [0, 255], with a
+   * gamma curve in between. Colors darker than black become 0, and colors brighter than white
+   * become 255.
+   *
+   * @param black The input value that becomes black.
+   * @param white The input value that becomes white, greater than black.
+   * @param gamma The gamma applied to the stretched values, more than 0 (1 for a straight line).
+   * @return The lookup table.
+   * @throws IllegalArgumentException if black and white are not in order in [0, 255], or the gamma
+   *                                  is not more than 0.
+   */
+  static LookupTable levels(int black, int white, double gamma) throws IllegalArgumentException {
+    if (black < 0 || white > 255 || black >= white) {
+      throw new IllegalArgumentException("Levels need 0 <= black < white <= 255");
+    }
+    if (!(gamma > 0) || Double.isInfinite(gamma)) {
+      throw new IllegalArgumentException("Gamma must be a number greater than 0");
+    }
+    int[] table = new int[LEVELS];
+    for (int v = 0; v < LEVELS; v++) {
+      double t = Math.min(Math.max((v - black) / (double) (white - black), 0), 1);
+      table[v] = (int) Math.round(255 * Math.pow(t, 1 / gamma));
+    }
+    return ofAllChannels(table);
+  }
+
+  /**
+   * Creates a table from a curve through a few points. Between two points the curve is a straight
+   * line; before the first point and after the last it stays flat.
+   *
+   * @param inputs  The input values of the points, increasing, in [0, 255].
+   * @param outputs The output values of the points, in [0, 255].
+   * @return The lookup table.
+   * @throws IllegalArgumentException if there are no points, the arrays have different lengths, or
+   *                                  a value is out of range or out of order.
+   */
+  static LookupTable curves(int[] inputs, int[] outputs) throws IllegalArgumentException {
+    if (inputs.length == 0 || inputs.length != outputs.length) {
+      throw new IllegalArgumentException("A curve needs at least one point, each with an input "
+              + "and an output");
+    }
+    for (int p = 0; p < inputs.length; p++) {
+      if (inputs[p] < 0 || inputs[p] > 255 || outputs[p] < 0 || outputs[p] > 255) {
+        throw new IllegalArgumentException("The points of a curve must be between 0 and 255");
+      }
+      if (p > 0 && inputs[p] <= inputs[p - 1]) {
+        throw new IllegalArgumentException("The inputs of a curve must be increasing");
+      }
+    }
+
+    int[] table = new int[LEVELS];
+    int last = inputs.length - 1;
+    int p = 0;
+    for (int v = 0; v < LEVELS; v++) {
+      while (p < last && v > inputs[p + 1]) {
+        p++;
+      }
+      if (v <= inputs[0]) {
+        table[v] = outputs[0];
+      } else if (v >= inputs[last]) {
+        table[v] = outputs[last];
+      } else {
+        double t = (v - inputs[p]) / (double) (inputs[p + 1] - inputs[p]);
+        table[v] = (int) Math.round(outputs[p] + t * (outputs[p + 1] - outputs[p]));
+      }
+    }
+    return ofAllChannels(table);
+  }
+
+  /**
+   * Composes this table with the one that comes after it, into one table that does both.
+   *
+   * @param next The table that is applied after this one.
+   * @return The composed table.
+   */
+  LookupTable then(LookupTable next) {
+    int[][] composed = new int[3][LEVELS];
+    for (int h = 0; h < 3; h++) {
+      for (int v = 0; v < LEVELS; v++) {
+        composed[h][v] = next.tables[h][tables[h][v]];
+      }
+    }
+    return new LookupTable(composed);
+  }
+
+  /**
+   * Getter for the new value of one old value.
+   *
+   * @param channel The color (0, 1, 2 for red, green, blue).
+   * @param value   The old value, from 0 to 255.
+   * @return The new value.
+   */
+  int get(int channel, int value) {
+    return tables[channel][value];
+  }
+
+  @Override
+  public void apply(int[] red, int[] green, int[] blue, int length) {
+    int[] redTable = tables[0];
+    int[] greenTable = tables[1];
+    int[] blueTable = tables[2];
+    for (int j = 0; j < length; j++) {
+      red[j] = redTable[red[j]];
+      green[j] = greenTable[green[j]];
+      blue[j] = blueTable[blue[j]];
+    }
+  }
+}
@@ -0,0 +1,223 @@
+package model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class is a raster that keeps its pixels off the heap, in a memory-mapped temporary file.
+ * Each row is stored as its red, green and blue bytes one after the other. The file is split into
+ * chunks of whole rows that each fit in one mapping, and offsets are computed as longs, so the
+ * raster can hold images that are bigger than the heap and have more than 2^31 color values.
+ *
+ * <p>
+ * The temporary file is deleted as soon as it has been mapped; the operating system frees the
+ * space once the raster is garbage collected.
+ * </p>
+ */
+class MappedRaster implements IRaster {
+
+  /**
+   * The mappings of the temporary file. Every chunk holds rowsPerChunk rows (the last one may hold
+   * less).
+   */
+  private final MappedByteBuffer[] chunks;
+
+  /**
+   * The width of the raster.
+   */
+  private final int width;
+
+  /**
+   * The height of the raster.
+   */
+  private final int height;
+
+  /**
+   * The number of bytes one row takes up.
+   */
+  private final int stride;
+
+  /**
+   * The number of rows in one chunk.
+   */
+  private final int rowsPerChunk;
+
+  /**
+   * Constructs an empty (black) mapped raster.
+   *
+   * @param width  The width of the raster.
+   * @param height The height of the raster.
+   * @throws IllegalStateException if the temporary file can't be created or mapped.
+   */
+  MappedRaster(int width, int height) throws IllegalStateException {
+    this(width, height, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Constructs an empty (black) mapped raster whose chunks hold at most a given number of bytes
+   * (but always at least one row).
+   *
+   * @param width      The width of the raster.
+   * @param height     The height of the raster.
+   * @param chunkBytes The largest number of bytes one mapping may hold.
+   * @throws IllegalStateException if the temporary file can't be created or mapped.
+   */
+  MappedRaster(int width, int height, int chunkBytes) throws IllegalStateException {
+    this.width = width;
+    this.height = height;
+    this.stride = 3 * width;
+    this.rowsPerChunk = stride == 0 ? Math.max(1, height) : Math.max(1, chunkBytes / stride);
+
+    int chunkCount = (height + rowsPerChunk - 1) / rowsPerChunk;
+    this.chunks = new MappedByteBuffer[chunkCount];
+
+    try {
+      Path file = Files.createTempFile("imagine-it", ".raster");
+      try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+              StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE)) {
+        for (int c = 0; c < chunkCount; c++) {
+          long rows = Math.min(rowsPerChunk, height - (long) c * rowsPerChunk);
+          chunks[c] = channel.map(FileChannel.MapMode.READ_WRITE,
+                  (long) c * rowsPerChunk * stride, rows * stride);
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Could not create off-heap storage for the image: "
+              + e.getMessage());
+    }
+  }
+
+  @Override
+  public int getWidth() {
+    return width;
+  }
+
+  @Override
+  public int getHeight() {
+    return height;
+  }
+
+  @Override
+  public StorageMode getMode() {
+    return StorageMode.MAPPED;
+  }
+
+  @Override
+  public int get(int row, int col, int channel) {
+    return chunk(row).get(offset(row, channel) + col) & 0xFF;
+  }
+
+  @Override
+  public void set(int row, int col, int channel, int value) {
+    chunk(row).put(offset(row, channel) + col, (byte) IRaster.clamp(value));
+  }
+
+  @Override
+  public int getRGB(int row, int col) {
+    ByteBuffer chunk = chunk(row);
+    int start = offset(row, 0) + col;
+    return ((chunk.get(start) & 0xFF) << 16) | ((chunk.get(start + width) & 0xFF) << 8)
+            | (chunk.get(start + 2 * width) & 0xFF);
+  }
+
+  @Override
+  public void setRGB(int row, int col, int rgb) {
+    ByteBuffer chunk = chunk(row);
+    int start = offset(row, 0) + col;
+    chunk.put(start, (byte) (rgb >> 16));
+    chunk.put(start + width, (byte) (rgb >> 8));
+    chunk.put(start + 2 * width, (byte) rgb);
+  }
+
+  @Override
+  public void readRow(int row, int channel, int[] dst) {
+    ByteBuffer chunk = chunk(row);
+    int start = offset(row, channel);
+    for (int j = 0; j < width; j++) {
+      dst[j] = chunk.get(start + j) & 0xFF;
+    }
+  }
+
+  @Override
+  public void readRow(int row, int[] red, int[] green, int[] blue) {
+    readRow(row, 0, red);
+    readRow(row, 1, green);
+    readRow(row, 2, blue);
+  }
+
+  @Override
+  public void writeRow(int row, int[] red, int[] green, int[] blue) {
+    ByteBuffer chunk = chunk(row);
+    int start = offset(row, 0);
+    for (int j = 0; j < width; j++) {
+      chunk.put(start + j, (byte) IRaster.clamp(red[j]));
+      chunk.put(start + width + j, (byte) IRaster.clamp(green[j]));
+      chunk.put(start + 2 * width + j, (byte) IRaster.clamp(blue[j]));
+    }
+  }
+
+  @Override
+  public void readRowRGB(int row, int[] dst) {
+    ByteBuffer chunk = chunk(row);
+    int start = offset(row, 0);
+    for (int j = 0; j < width; j++) {
+      dst[j] = ((chunk.get(start + j) & 0xFF) << 16)
+              | ((chunk.get(start + width + j) & 0xFF) << 8)
+              | (chunk.get(start + 2 * width + j) & 0xFF);
+    }
+  }
+
+  @Override
+  public void writeRowRGB(int row, int[] src) {
+    ByteBuffer chunk = chunk(row);
+    int start = offset(row, 0);
+    for (int j = 0; j < width; j++) {
+      chunk.put(start + j, (byte) (src[j] >> 16));
+      chunk.put(start + width + j, (byte) (src[j] >> 8));
+      chunk.put(start + 2 * width + j, (byte) src[j]);
+    }
+  }
+
+  @Override
+  public IRaster copy() {
+    MappedRaster copy = new MappedRaster(width, height, rowsPerChunk * stride);
+    for (int c = 0; c < chunks.length; c++) {
+      // duplicates have their own position, so the originals are never moved.
+      ByteBuffer src = chunks[c].duplicate();
+      src.clear();
+      copy.chunks[c].duplicate().put(src);
+    }
+    return copy;
+  }
+
+  @Override
+  public void write(String filename) throws IOException {
+    ImageUtil.writeImage(new RasterImage(this), filename);
+  }
+
+  /**
+   * This helper method finds the chunk holding a row.
+   *
+   * @param row The row.
+   * @return The mapping that holds the row.
+   */
+  private ByteBuffer chunk(int row) {
+    return chunks[row / rowsPerChunk];
+  }
+
+  /**
+   * This helper method finds where the values of one color of a row start inside its chunk.
+   *
+   * @param row     The row.
+   * @param channel The color (0, 1, 2 for red, green, blue).
+   * @return The offset inside the chunk returned by {@link #chunk(int)}.
+   */
+  private int offset(int row, int channel) {
+    return (row % rowsPerChunk) * stride + channel * width;
+  }
+}
@@ -1,11 +1,36 @@
 package model;
 
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
 
 /**
  * This class is a representation of a model in an MVC design pattern. It is used primarily by the
  * controller to manipulate and generate images provided by this class's (and its interface's)
  * public methods.
+ *
+ * <p>
+ * Point operations (grayscale, sepia and the tone adjustments) aren't applied right away.
+ * Consecutive point operations are queued and fused into a single pass over the image, which is run
+ * as soon as anything else happens: another operation, saving, undoing or redoing, or showing the
+ * image. Consecutive tone adjustments are lookup tables, which are first composed into one table.
+ * The fused pass gives exactly the same image, and is recorded as one step in the history.
+ * </p>
+ *
+ * <p>
+ * In lazy mode, every operation is only recorded into a plan. The plan is run when the pixels are
+ * needed (saving, showing the image, undoing or redoing, or an explicit {@link #flush()}), with
+ * point operations fused, and is recorded as one step in the history. Loading or generating an
+ * image throws the plan away without running it, since its result would be replaced anyway.
+ * </p>
+ *
+ * <p>
+ * A mosaic without a random seed is kept along with the image it was made from. Another mosaic of
+ * that same image (say after an undo) reuses its seeds and only redoes the pixels whose seed
+ * changes with the new number of seeds, which is what makes trying out seed counts fast.
+ * </p>
  */
 public class ModelImpl implements IModel {
 
@@ -25,10 +50,46 @@ public class ModelImpl implements IModel {
   private ImageBuffer buffer;
 
   /**
-   * This constructs a model.ModelImpl object.
+   * The way the pixels of loaded and generated images are stored in memory.
+   */
+  private final StorageMode mode;
+
+  /**
+   * Whether effects and filters use fixed-point arithmetic.
+   */
+  private boolean fixedPoint;
+
+  /**
+   * Whether operations are only recorded until the pixels are needed.
+   */
+  private boolean lazy;
+
+  /**
+   * The operations that have been asked for but not applied yet, in order.
+   */
+  private final List<Step> plan = new ArrayList<>();
+
+  /**
+   * The last mosaic made without a random seed, so that another mosaic of the same image only
+   * redoes what changes with the number of seeds; null if there is none.
+   */
+  private MosaicCache mosaicCache;
+
+  /**
+   * This constructs a model.ModelImpl object that stores images as packed rasters.
    */
   public ModelImpl() {
-    this.imgGen = new ImageGenerator(0, 0);
+    this(StorageMode.PACKED);
+  }
+
+  /**
+   * This constructs a model.ModelImpl object that stores images with the given storage mode.
+   *
+   * @param mode the way the pixels of images are stored in memory.
+   */
+  public ModelImpl(StorageMode mode) {
+    this.mode = mode;
+    this.imgGen = new ImageGenerator(0, 0, mode);
     this.img = null;
     this.buffer = new ImageBuffer();
   }
@@ -43,73 +104,210 @@ public class ModelImpl implements IModel {
   }
 
   @Override
-  public void dither() {
-    img.dither();
-    buffer.add(img);
+  public void setFixedPoint(boolean fixedPoint) {
+    this.fixedPoint = fixedPoint;
+  }
+
+  @Override
+  public void setLazy(boolean lazy) {
+    this.lazy = lazy;
+    if (!lazy) {
+      flush();
+    }
   }
 
   @Override
-  public void mosaic(int i) {
-    img.mosaic(i);
+  public void flush() {
+    if (plan.isEmpty()) {
+      return;
+    }
+    List<IPointOp> fused = new ArrayList<>();
+    for (Step step : plan) {
+      if (step.pointOp != null) {
+        addPointOp(fused, step.pointOp);
+      } else {
+        if (!fused.isEmpty()) {
+          img.applyPointOps(fused);
+          fused = new ArrayList<>();
+        }
+        step.operation.accept(img);
+      }
+    }
+    if (!fused.isEmpty()) {
+      img.applyPointOps(fused);
+    }
+    plan.clear();
     buffer.add(img);
   }
 
+  @Override
+  public void dither() {
+    run(image -> image.dither());
+  }
+
+  @Override
+  public void dither(boolean color, boolean serpentine) {
+    run(image -> image.dither(color, serpentine));
+  }
+
+  @Override
+  public void ditherOrdered(int size) throws IllegalArgumentException {
+    // check the size now, in case the plan runs later.
+    ThresholdDither.bayer(size);
+    run(image -> image.ditherOrdered(size));
+  }
+
+  @Override
+  public void ditherBlueNoise() {
+    run(image -> image.ditherBlueNoise());
+  }
+
+  @Override
+  public void quantize(int colors, boolean dither) throws IllegalArgumentException {
+    if (colors < 1 || colors > Palette.MAX_COLORS) {
+      throw new IllegalArgumentException("The number of colors must be from 1 to "
+              + Palette.MAX_COLORS);
+    }
+    run(image -> image.quantize(colors, dither));
+  }
+
+  @Override
+  public void mosaic(int i) throws IllegalArgumentException {
+    checkSeeds(i);
+    if (Image.JUMP_FLOOD) {
+      run(image -> image.mosaic(i));
+      return;
+    }
+    run(image -> {
+      IRaster data = image.getData();
+      if (mosaicCache == null || !mosaicCache.isSourceOf(data)) {
+        mosaicCache = new MosaicCache(data, new Random());
+      }
+      mosaicCache.setCount(i);
+      mosaicCache.paint(data);
+    });
+  }
+
+  @Override
+  public void mosaic(int i, long randomSeed) throws IllegalArgumentException {
+    checkSeeds(i);
+    run(image -> image.mosaic(i, randomSeed));
+  }
+
+  @Override
+  public void superpixels(int count, int iterations, double compactness)
+          throws IllegalArgumentException {
+    checkSeeds(count);
+    if (iterations < 1 || !(compactness >= 0) || Double.isInfinite(compactness)) {
+      throw new IllegalArgumentException("Superpixels need at least 1 iteration and a compactness "
+              + "of at least 0");
+    }
+    run(image -> image.superpixels(count, iterations, compactness));
+  }
+
   @Override
   public void sharpen() {
-    img.sharpen();
-    buffer.add(img);
+    run(image -> image.sharpen());
   }
 
   @Override
   public void blur() {
-    img.blur();
-    buffer.add(img);
+    run(image -> image.blur());
+  }
+
+  @Override
+  public void blur(int radius) throws IllegalArgumentException {
+    if (radius < 1) {
+      throw new IllegalArgumentException("The blur radius must be at least 1");
+    }
+    run(image -> image.blur(radius));
+  }
+
+  @Override
+  public void applyKernel(int rows, int cols, double[] values, BorderMode border)
+          throws IllegalArgumentException {
+    // check the kernel now, and keep a copy of the weights, in case the plan runs later.
+    double[] weights = new Kernel(rows, cols, values).getValues();
+    run(image -> image.applyKernel(rows, cols, weights, border));
   }
 
   @Override
   public void sepia() {
-    img.toSepia();
-    buffer.add(img);
+    img.setFixedPoint(fixedPoint);
+    plan.add(new Step(img.sepiaOp()));
   }
 
   @Override
   public void grayscale() {
-    img.toGrayScale();
-    buffer.add(img);
+    img.setFixedPoint(fixedPoint);
+    plan.add(new Step(img.grayscaleOp()));
+  }
+
+  @Override
+  public void brightness(int amount) throws IllegalArgumentException {
+    plan.add(new Step(LookupTable.brightness(amount)));
+  }
+
+  @Override
+  public void contrast(double factor) throws IllegalArgumentException {
+    plan.add(new Step(LookupTable.contrast(factor)));
+  }
+
+  @Override
+  public void gamma(double gamma) throws IllegalArgumentException {
+    plan.add(new Step(LookupTable.gamma(gamma)));
+  }
+
+  @Override
+  public void levels(int black, int white, double gamma) throws IllegalArgumentException {
+    plan.add(new Step(LookupTable.levels(black, white, gamma)));
+  }
+
+  @Override
+  public void curves(int[] inputs, int[] outputs) throws IllegalArgumentException {
+    plan.add(new Step(LookupTable.curves(inputs, outputs)));
   }
 
   @Override
   public void save(String filepath) {
+    flush();
     img.save(filepath);
   }
 
   @Override
   public void load(String filepath) {
-    img = new Image(filepath);
+    // drop the old mosaic first, so that its copy of the old image can be freed while loading.
+    mosaicCache = null;
+    img = new Image(filepath, mode);
+    plan.clear();
     this.buffer = new ImageBuffer();
     buffer.add(img);
   }
 
   @Override
   public void drawFrance(int height) {
+    discardOrFlush();
     img = imgGen.drawFrance(height);
     buffer.add(img);
   }
 
   @Override
   public void drawGreece(int height) throws IllegalArgumentException {
+    discardOrFlush();
     img = imgGen.drawGreece(height);
     buffer.add(img);
   }
 
   @Override
   public void drawSwitzerland(int height) {
+    discardOrFlush();
     img = imgGen.drawSwitzerland(height);
     buffer.add(img);
   }
 
   @Override
   public void drawCheckerboard(int squaresize) {
+    discardOrFlush();
     img = imgGen.drawCheckerBoard(squaresize);
     buffer.add(img);
 
@@ -117,40 +315,154 @@ public class ModelImpl implements IModel {
 
   @Override
   public void drawHorizontalRainbow(int width, int height) {
+    discardOrFlush();
     img = imgGen.drawHorizontalRainbow(width, height);
     buffer.add(img);
   }
 
   @Override
   public void drawVerticalRainbow(int width, int height) {
+    discardOrFlush();
     img = imgGen.drawVerticalRainbow(width, height);
     buffer.add(img);
   }
 
   @Override
   public void undo() {
+    flush();
     buffer.undo();
     img = buffer.getImage();
   }
 
   @Override
   public void redo() {
+    flush();
     buffer.redo();
     img = buffer.getImage();
   }
 
   @Override
   public boolean canRedo() {
-    return buffer.canRedo();
+    // a waiting plan becomes a new step when it runs, which leaves nothing to redo.
+    return plan.isEmpty() && buffer.canRedo();
   }
 
   @Override
   public boolean canUndo() {
-    return buffer.canUndo();
+    // a waiting plan can always be undone, and checking doesn't run it.
+    return !plan.isEmpty() || buffer.canUndo();
   }
 
   @Override
   public BufferedImage toBufferedImage() {
+    flush();
     return img.toBufferedImage();
   }
+
+  /**
+   * This helper method runs an operation that isn't a point operation, or records it in the plan
+   * in lazy mode. It runs with the arithmetic chosen when it was asked for. When it runs right
+   * away, the queued point operations are applied first, and the result is recorded in the
+   * history.
+   *
+   * @param operation The operation.
+   */
+  private void run(Consumer<Image> operation) {
+    boolean fixed = fixedPoint;
+    Consumer<Image> step = image -> {
+      image.setFixedPoint(fixed);
+      operation.accept(image);
+    };
+    if (lazy) {
+      plan.add(new Step(step));
+    } else {
+      flush();
+      step.accept(img);
+      buffer.add(img);
+    }
+  }
+
+  /**
+   * This helper method checks the number of seeds of a mosaic before it's run or recorded, so that
+   * a bad number is reported right away even in lazy mode.
+   *
+   * @param seeds The number of seeds.
+   * @throws IllegalArgumentException if there are less than 1 seed, or more than the image has
+   *                                  pixels.
+   */
+  private void checkSeeds(int seeds) throws IllegalArgumentException {
+    if (seeds < 1 || (img != null && seeds > (long) img.getWidth() * img.getHeight())) {
+      throw new IllegalArgumentException("The number of seeds must be from 1 to the number of "
+              + "pixels");
+    }
+  }
+
+  /**
+   * This helper method adds a point operation to a list of operations to fuse. When both the new
+   * operation and the last one in the list are lookup tables, they are composed into one table
+   * instead, so the pixels are only looked up once.
+   *
+   * @param fused   The point operations to fuse so far.
+   * @param pointOp The point operation to add.
+   */
+  private static void addPointOp(List<IPointOp> fused, IPointOp pointOp) {
+    int last = fused.size() - 1;
+    if (last >= 0 && fused.get(last) instanceof LookupTable && pointOp instanceof LookupTable) {
+      fused.set(last, ((LookupTable) fused.get(last)).then((LookupTable) pointOp));
+    } else {
+      fused.add(pointOp);
+    }
+  }
+
+  /**
+   * This helper method deals with the plan before the image is replaced by a new one. In lazy mode
+   * the plan is thrown away, because nobody will see its result; otherwise the queued point
+   * operations are applied so they are in the history. The cached mosaic is dropped as well.
+   */
+  private void discardOrFlush() {
+    mosaicCache = null;
+    if (lazy) {
+      plan.clear();
+    } else {
+      flush();
+    }
+  }
+
+  /**
+   * This class is one operation in the plan: either a point operation, which can be fused with the
+   * point operations around it, or any other operation on the image.
+   */
+  private static final class Step {
+
+    /**
+     * The point operation, or null if this is another operation.
+     */
+    private final IPointOp pointOp;
+
+    /**
+     * The operation, or null if this is a point operation.
+     */
+    private final Consumer<Image> operation;
+
+    /**
+     * Constructs a step for a point operation.
+     *
+     * @param pointOp The point operation.
+     */
+    Step(IPointOp pointOp) {
+      this.pointOp = pointOp;
+      this.operation = null;
+    }
+
+    /**
+     * Constructs a step for any other operation.
+     *
+     * @param operation The operation.
+     */
+    Step(Consumer<Image> operation) {
+      this.pointOp = null;
+      this.operation = operation;
+    }
+  }
+
 }
@@ -0,0 +1,407 @@
+package model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * This class keeps the last mosaic made from an image, so that a mosaic of the same image with a
+ * different number of seeds only redoes the part of the work that changes. It keeps a copy of the
+ * image, the seeds in the order they were drawn, the seed of every pixel, and the number of pixels
+ * and color sums of every seed.
+ *
+ * <p>
+ * The seeds are always drawn in the same order, so n seeds are the first n of that order, and
+ * changing the number of seeds only adds seeds at the end or takes them away from the end. When
+ * seeds are added, a pixel changes seed only if a new seed is closer than its own, so only the
+ * tiles of the image that a new seed is close enough to are looked at: every tile keeps how far
+ * its pixels are from their seeds at most. When seeds are taken away, only the pixels of those
+ * seeds look for a new one. The seed of every pixel is always the closest one, the lowest one if
+ * there is a tie, exactly as if the mosaic was made from scratch with the same seeds.
+ * </p>
+ */
+final class MosaicCache {
+
+  /**
+   * The length of the side of a tile, in pixels.
+   */
+  private static final int TILE = 64;
+
+  /**
+   * A copy of the image the mosaic is made from.
+   */
+  private final IRaster source;
+
+  /**
+   * The width of the image.
+   */
+  private final int width;
+
+  /**
+   * The height of the image.
+   */
+  private final int height;
+
+  /**
+   * The number of columns of tiles.
+   */
+  private final int tileCols;
+
+  /**
+   * The number of rows of tiles.
+   */
+  private final int tileRows;
+
+  /**
+   * The random generator that draws the seeds.
+   */
+  private final Random random;
+
+  /**
+   * The pixels that have been moved by the shuffle that draws the seeds: the pixel now at a spot,
+   * for every spot that doesn't hold its own pixel.
+   */
+  private final Map<Integer, Integer> shuffled = new HashMap<>();
+
+  /**
+   * The row of every seed drawn so far, in order.
+   */
+  private int[] rows = new int[16];
+
+  /**
+   * The column of every seed drawn so far, in order.
+   */
+  private int[] cols = new int[16];
+
+  /**
+   * The number of seeds drawn so far.
+   */
+  private int drawn;
+
+  /**
+   * The number of seeds the mosaic uses, the first ones drawn.
+   */
+  private int count;
+
+  /**
+   * The seed of every pixel, row by row, or null before the first mosaic.
+   */
+  private int[] labels;
+
+  /**
+   * The number of pixels of every seed and the sums of their colors, side by side.
+   */
+  private long[] sums = new long[4 * 16];
+
+  /**
+   * The largest squared distance from a pixel of every tile to its seed.
+   */
+  private final long[] tileReach;
+
+  /**
+   * Constructs the cache for an image. The seeds are drawn when the first mosaic is made.
+   *
+   * @param data   The image, which is copied.
+   * @param random The random generator that draws the seeds.
+   */
+  MosaicCache(IRaster data, Random random) {
+    this.source = data.copy();
+    this.width = data.getWidth();
+    this.height = data.getHeight();
+    this.tileCols = (width + TILE - 1) / TILE;
+    this.tileRows = (height + TILE - 1) / TILE;
+    this.tileReach = new long[tileCols * tileRows];
+    this.random = random;
+  }
+
+  /**
+   * Checks whether an image is the one this cache was made from, pixel for pixel.
+   *
+   * @param data The image.
+   * @return True if it has the same size and pixels.
+   */
+  boolean isSourceOf(IRaster data) {
+    if (data.getWidth() != width || data.getHeight() != height) {
+      return false;
+    }
+    int[] expected = new int[width];
+    int[] actual = new int[width];
+    for (int i = 0; i < height; i++) {
+      source.readRowRGB(i, expected);
+      data.readRowRGB(i, actual);
+      for (int j = 0; j < width; j++) {
+        if (expected[j] != actual[j]) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Changes the number of seeds of the mosaic, redoing only what changes.
+   *
+   * @param seeds The number of seeds.
+   * @throws IllegalArgumentException if the number is less than 1 or more than the number of
+   *                                  pixels.
+   */
+  void setCount(int seeds) throws IllegalArgumentException {
+    if (seeds < 1 || seeds > (long) width * height) {
+      throw new IllegalArgumentException("The number of seeds must be from 1 to the number of "
+              + "pixels");
+    }
+    draw(seeds);
+    if (labels == null) {
+      build(seeds);
+    } else if (seeds > count) {
+      add(seeds);
+    } else if (seeds < count) {
+      remove(seeds);
+    }
+    count = seeds;
+  }
+
+  /**
+   * Paints the mosaic: every pixel gets the average color of its seed.
+   *
+   * @param data The raster to paint, the same size as the image.
+   */
+  void paint(IRaster data) {
+    int[] colors = new int[count];
+    for (int k = 0; k < count; k++) {
+      long pixels = sums[4 * k];
+      for (int h = 1; pixels > 0 && h <= 3; h++) {
+        colors[k] = (colors[k] << 8) | (int) ((2 * sums[4 * k + h] + pixels) / (2 * pixels));
+      }
+    }
+    TileExecutor.forEachBand(width, height, (rowStart, rowEnd) -> {
+      int[] row = new int[width];
+      for (int i = rowStart; i < rowEnd; i++) {
+        for (int j = 0; j < width; j++) {
+          row[j] = colors[labels[i * width + j]];
+        }
+        data.writeRowRGB(i, row);
+      }
+    });
+  }
+
+  /**
+   * This helper method draws seeds until there are at least the given number. It's a shuffle of
+   * all the pixels that stops after the first few spots, keeping only the pixels it has moved, so
+   * every seed takes one random number and the seeds drawn never change.
+   *
+   * @param seeds The number of seeds needed.
+   */
+  private void draw(int seeds) {
+    if (seeds > rows.length) {
+      int capacity = Math.max(seeds, 2 * rows.length);
+      rows = Arrays.copyOf(rows, capacity);
+      cols = Arrays.copyOf(cols, capacity);
+      sums = Arrays.copyOf(sums, 4 * capacity);
+    }
+    int pixels = width * height;
+    for (; drawn < seeds; drawn++) {
+      int other = drawn + random.nextInt(pixels - drawn);
+      int pixel = shuffled.getOrDefault(other, other);
+      shuffled.put(other, shuffled.getOrDefault(drawn, drawn));
+      shuffled.remove(drawn);
+      rows[drawn] = pixel / width;
+      cols[drawn] = pixel % width;
+    }
+  }
+
+  /**
+   * This helper method finds the seed of every pixel from scratch.
+   *
+   * @param seeds The number of seeds.
+   */
+  private void build(int seeds) {
+    SeedGrid grid = new SeedGrid(Arrays.copyOf(rows, seeds),
+            Arrays.copyOf(cols, seeds), height, width);
+    labels = new int[width * height];
+    TileExecutor.forEachBand(width, height, (rowStart, rowEnd) -> {
+      for (int i = rowStart; i < rowEnd; i++) {
+        for (int j = 0; j < width; j++) {
+          labels[i * width + j] = grid.nearest(i, j);
+        }
+      }
+    });
+    Arrays.fill(sums, 0);
+    int[] row = new int[width];
+    for (int i = 0; i < height; i++) {
+      source.readRowRGB(i, row);
+      for (int j = 0; j < width; j++) {
+        addPixel(labels[i * width + j], row[j], 1);
+      }
+    }
+    for (int tile = 0; tile < tileReach.length; tile++) {
+      tileReach[tile] = reach(tile);
+    }
+  }
+
+  /**
+   * This helper method adds seeds at the end. A tile is only looked at if a new seed is closer to
+   * it than the farthest of its pixels is from its seed, and then only the new seeds that are that
+   * close are compared with its pixels.
+   *
+   * @param seeds The new number of seeds.
+   */
+  private void add(int seeds) {
+    long farthest = 0;
+    for (long reach : tileReach) {
+      farthest = Math.max(farthest, reach);
+    }
+    // the new seeds that may take pixels of every tile, in order.
+    int[][] candidates = new int[tileReach.length][];
+    int[] found = new int[tileReach.length];
+    int radius = (int) Math.min(Math.max(tileRows, tileCols),
+            (long) Math.ceil(Math.sqrt((double) farthest)) / TILE + 1);
+    for (int k = count; k < seeds; k++) {
+      int ti = rows[k] / TILE;
+      int tj = cols[k] / TILE;
+      for (int gi = Math.max(0, ti - radius); gi <= Math.min(tileRows - 1, ti + radius); gi++) {
+        for (int gj = Math.max(0, tj - radius); gj <= Math.min(tileCols - 1, tj + radius); gj++) {
+          int tile = gi * tileCols + gj;
+          if (gap(k, gi, gj) < tileReach[tile]) {
+            if (candidates[tile] == null) {
+              candidates[tile] = new int[4];
+            } else if (found[tile] == candidates[tile].length) {
+              candidates[tile] = Arrays.copyOf(candidates[tile], 2 * found[tile]);
+            }
+            candidates[tile][found[tile]++] = k;
+          }
+        }
+      }
+    }
+
+    int[] row = new int[width];
+    for (int tile = 0; tile < tileReach.length; tile++) {
+      if (found[tile] == 0) {
+        continue;
+      }
+      int top = tile / tileCols * TILE;
+      int left = tile % tileCols * TILE;
+      for (int i = top; i < Math.min(height, top + TILE); i++) {
+        source.readRowRGB(i, row);
+        for (int j = left; j < Math.min(width, left + TILE); j++) {
+          int old = labels[i * width + j];
+          int best = old;
+          long bestDistance = distance(old, i, j);
+          for (int c = 0; c < found[tile]; c++) {
+            int k = candidates[tile][c];
+            long d = distance(k, i, j);
+            if (d < bestDistance || (d == bestDistance && k < best)) {
+              bestDistance = d;
+              best = k;
+            }
+          }
+          if (best != old) {
+            labels[i * width + j] = best;
+            addPixel(old, row[j], -1);
+            addPixel(best, row[j], 1);
+          }
+        }
+      }
+      tileReach[tile] = reach(tile);
+    }
+  }
+
+  /**
+   * This helper method takes seeds away from the end. Only the pixels of those seeds are given
+   * the closest of the seeds that are left.
+   *
+   * @param seeds The new number of seeds.
+   */
+  private void remove(int seeds) {
+    SeedGrid grid = new SeedGrid(Arrays.copyOf(rows, seeds),
+            Arrays.copyOf(cols, seeds), height, width);
+    int[] row = new int[width];
+    for (int tile = 0; tile < tileReach.length; tile++) {
+      int top = tile / tileCols * TILE;
+      int left = tile % tileCols * TILE;
+      boolean changed = false;
+      for (int i = top; i < Math.min(height, top + TILE); i++) {
+        boolean read = false;
+        for (int j = left; j < Math.min(width, left + TILE); j++) {
+          int old = labels[i * width + j];
+          if (old < seeds) {
+            continue;
+          }
+          if (!read) {
+            source.readRowRGB(i, row);
+            read = true;
+          }
+          int best = grid.nearest(i, j);
+          labels[i * width + j] = best;
+          addPixel(old, row[j], -1);
+          addPixel(best, row[j], 1);
+          changed = true;
+        }
+      }
+      if (changed) {
+        tileReach[tile] = reach(tile);
+      }
+    }
+  }
+
+  /**
+   * This helper method adds a pixel to the sums of a seed, or takes it away.
+   *
+   * @param seed The seed.
+   * @param rgb  The color of the pixel, as a packed 0xRRGGBB value.
+   * @param sign 1 to add the pixel, -1 to take it away.
+   */
+  private void addPixel(int seed, int rgb, int sign) {
+    sums[4 * seed] += sign;
+    sums[4 * seed + 1] += sign * ((rgb >> 16) & 0xFF);
+    sums[4 * seed + 2] += sign * ((rgb >> 8) & 0xFF);
+    sums[4 * seed + 3] += sign * (rgb & 0xFF);
+  }
+
+  /**
+   * This helper method computes the squared distance from a seed to a pixel.
+   *
+   * @param seed The seed.
+   * @param row  The row of the pixel.
+   * @param col  The column of the pixel.
+   * @return The squared distance.
+   */
+  private long distance(int seed, int row, int col) {
+    long dr = rows[seed] - row;
+    long dc = cols[seed] - col;
+    return dr * dr + dc * dc;
+  }
+
+  /**
+   * This helper method computes the squared distance from a seed to the closest pixel of a tile.
+   *
+   * @param seed The seed.
+   * @param ti   The row of the tile.
+   * @param tj   The column of the tile.
+   * @return The squared distance, 0 if the seed is in the tile.
+   */
+  private long gap(int seed, int ti, int tj) {
+    long dr = Math.max(0, Math.max(ti * TILE - rows[seed], rows[seed] - (ti * TILE + TILE - 1)));
+    long dc = Math.max(0, Math.max(tj * TILE - cols[seed], cols[seed] - (tj * TILE + TILE - 1)));
+    return dr * dr + dc * dc;
+  }
+
+  /**
+   * This helper method finds how far the pixels of a tile are from their seeds at most.
+   *
+   * @param tile The tile.
+   * @return The largest squared distance.
+   */
+  private long reach(int tile) {
+    int top = tile / tileCols * TILE;
+    int left = tile % tileCols * TILE;
+    long farthest = 0;
+    for (int i = top; i < Math.min(height, top + TILE); i++) {
+      for (int j = left; j < Math.min(width, left + TILE); j++) {
+        farthest = Math.max(farthest, distance(labels[i * width + j], i, j));
+      }
+    }
+    return farthest;
+  }
+}
@@ -0,0 +1,138 @@
+package model;
+
+import java.io.IOException;
+
+/**
+ * This class is a raster that stores each pixel in one int, with the colors packed as 0xRRGGBB.
+ * Pixels are stored row by row in one contiguous array (the same layout as
+ * BufferedImage.TYPE_INT_RGB).
+ */
+class PackedRaster implements IRaster {
+
+  /**
+   * The packed pixels, row by row.
+   */
+  private final int[] data;
+
+  /**
+   * The width of the raster.
+   */
+  private final int width;
+
+  /**
+   * The height of the raster.
+   */
+  private final int height;
+
+  /**
+   * Constructs an empty (black) packed raster.
+   *
+   * @param width  The width of the raster.
+   * @param height The height of the raster.
+   */
+  PackedRaster(int width, int height) {
+    this(new int[width * height], width, height);
+  }
+
+  /**
+   * Constructs a packed raster around existing pixel data. The array is used as is, not copied.
+   *
+   * @param data   The packed pixels, row by row.
+   * @param width  The width of the raster.
+   * @param height The height of the raster.
+   */
+  PackedRaster(int[] data, int width, int height) {
+    this.data = data;
+    this.width = width;
+    this.height = height;
+  }
+
+  @Override
+  public int getWidth() {
+    return width;
+  }
+
+  @Override
+  public int getHeight() {
+    return height;
+  }
+
+  @Override
+  public StorageMode getMode() {
+    return StorageMode.PACKED;
+  }
+
+  @Override
+  public int get(int row, int col, int channel) {
+    return (data[row * width + col] >> (16 - 8 * channel)) & 0xFF;
+  }
+
+  @Override
+  public void set(int row, int col, int channel, int value) {
+    int shift = 16 - 8 * channel;
+    int index = row * width + col;
+    data[index] = (data[index] & ~(0xFF << shift)) | (IRaster.clamp(value) << shift);
+  }
+
+  @Override
+  public int getRGB(int row, int col) {
+    return data[row * width + col];
+  }
+
+  @Override
+  public void setRGB(int row, int col, int rgb) {
+    data[row * width + col] = rgb & 0xFFFFFF;
+  }
+
+  @Override
+  public void readRow(int row, int channel, int[] dst) {
+    int shift = 16 - 8 * channel;
+    int start = row * width;
+    for (int j = 0; j < width; j++) {
+      dst[j] = (data[start + j] >> shift) & 0xFF;
+    }
+  }
+
+  @Override
+  public void readRow(int row, int[] red, int[] green, int[] blue) {
+    int start = row * width;
+    for (int j = 0; j < width; j++) {
+      int rgb = data[start + j];
+      red[j] = (rgb >> 16) & 0xFF;
+      green[j] = (rgb >> 8) & 0xFF;
+      blue[j] = rgb & 0xFF;
+    }
+  }
+
+  @Override
+  public void writeRow(int row, int[] red, int[] green, int[] blue) {
+    int start = row * width;
+    for (int j = 0; j < width; j++) {
+      data[start + j] = (IRaster.clamp(red[j]) << 16) | (IRaster.clamp(green[j]) << 8)
+              | IRaster.clamp(blue[j]);
+    }
+  }
+
+  @Override
+  public void readRowRGB(int row, int[] dst) {
+    System.arraycopy(data, row * width, dst, 0, width);
+  }
+
+  @Override
+  public void writeRowRGB(int row, int[] src) {
+    int start = row * width;
+    for (int j = 0; j < width; j++) {
+      data[start + j] = src[j] & 0xFFFFFF;
+    }
+  }
+
+  @Override
+  public IRaster copy() {
+    return new PackedRaster(data.clone(), width, height);
+  }
+
+  @Override
+  public void write(String filename) throws IOException {
+    ImageUtil.writeImage(data, width, height, filename);
+  }
+}
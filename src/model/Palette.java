@@ -0,0 +1,271 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * This class represents a palette: the few colors an image is reduced to. It's built with the
+ * median-cut method, and looks up the palette color closest to any color through an inverse-color
+ * cache.
+ *
+ * <p>
+ * Colors are grouped into cells of 8x8x8 values (32 cells per color). To build the palette, the
+ * cells the image uses are put into one box, and the box with the most pixels times the longest
+ * side is cut in two at the median of that side, until there are as many boxes as colors wanted.
+ * Every box becomes the average color of its pixels. The cache holds the palette color closest to
+ * the middle of every cell, so finding the color for a pixel is a single lookup instead of a
+ * search through the palette.
+ * </p>
+ */
+final class Palette implements IQuantizer {
+
+  /**
+   * The most colors a palette can have.
+   */
+  static final int MAX_COLORS = 256;
+
+  /**
+   * The number of bits of a color that pick its cell.
+   */
+  private static final int BITS = 5;
+
+  /**
+   * The number of cells along each color.
+   */
+  private static final int CELLS = 1 << BITS;
+
+  /**
+   * The colors of the palette, as packed 0xRRGGBB values.
+   */
+  private final int[] colors;
+
+  /**
+   * The palette color closest to the middle of every cell, as a packed 0xRRGGBB value.
+   */
+  private final int[] cache;
+
+  /**
+   * Constructs a palette from its colors, and fills the inverse-color cache.
+   *
+   * @param colors The colors, as packed 0xRRGGBB values.
+   * @throws IllegalArgumentException if there are no colors or more than 256.
+   */
+  Palette(int[] colors) throws IllegalArgumentException {
+    if (colors.length < 1 || colors.length > MAX_COLORS) {
+      throw new IllegalArgumentException("A palette must have 1 to " + MAX_COLORS + " colors");
+    }
+    this.colors = colors.clone();
+    this.cache = new int[CELLS * CELLS * CELLS];
+    int shift = 8 - BITS;
+    int middle = 1 << (shift - 1);
+    for (int cell = 0; cell < cache.length; cell++) {
+      int r = coordinate(cell, 0) << shift | middle;
+      int g = coordinate(cell, 1) << shift | middle;
+      int b = coordinate(cell, 2) << shift | middle;
+      cache[cell] = this.colors[nearest(r, g, b)];
+    }
+  }
+
+  /**
+   * Builds a palette for a raster with the median-cut method.
+   *
+   * @param data  The raster.
+   * @param count The number of colors wanted, from 1 to 256. The palette has fewer colors if the
+   *              image has fewer cells.
+   * @return The palette.
+   * @throws IllegalArgumentException if the number of colors is out of range.
+   */
+  static Palette medianCut(IRaster data, int count) throws IllegalArgumentException {
+    if (count < 1 || count > MAX_COLORS) {
+      throw new IllegalArgumentException("The number of colors must be from 1 to " + MAX_COLORS);
+    }
+
+    // the number of pixels in every cell and the sums of their colors, side by side so that a
+    // pixel only touches one spot in memory.
+    int cellCount = CELLS * CELLS * CELLS;
+    long[] histogram = new long[4 * cellCount];
+    int width = data.getWidth();
+    int[] row = new int[width];
+    for (int i = 0; i < data.getHeight(); i++) {
+      data.readRowRGB(i, row);
+      for (int j = 0; j < width; j++) {
+        int r = (row[j] >> 16) & 0xFF;
+        int g = (row[j] >> 8) & 0xFF;
+        int b = row[j] & 0xFF;
+        int spot = 4 * cellOf(r, g, b);
+        histogram[spot]++;
+        histogram[spot + 1] += r;
+        histogram[spot + 2] += g;
+        histogram[spot + 3] += b;
+      }
+    }
+    long[] pixels = new long[cellCount];
+    for (int cell = 0; cell < cellCount; cell++) {
+      pixels[cell] = histogram[4 * cell];
+    }
+
+    int used = 0;
+    int[] cells = new int[cellCount];
+    for (int cell = 0; cell < cellCount; cell++) {
+      if (pixels[cell] > 0) {
+        cells[used++] = cell;
+      }
+    }
+
+    // every box is a range of cells; a box is cut by sorting its range on one color.
+    int[] starts = new int[count + 1];
+    int boxes = 1;
+    starts[1] = used;
+    int[] keys = new int[used];
+    while (boxes < count) {
+      int best = -1;
+      int bestAxis = 0;
+      double bestScore = 0;
+      for (int box = 0; box < boxes; box++) {
+        long population = 0;
+        int[] low = {CELLS, CELLS, CELLS};
+        int[] high = {-1, -1, -1};
+        for (int k = starts[box]; k < starts[box + 1]; k++) {
+          population += pixels[cells[k]];
+          for (int axis = 0; axis < 3; axis++) {
+            int v = coordinate(cells[k], axis);
+            low[axis] = Math.min(low[axis], v);
+            high[axis] = Math.max(high[axis], v);
+          }
+        }
+        for (int axis = 0; axis < 3; axis++) {
+          double score = (double) population * (high[axis] - low[axis]);
+          if (score > bestScore) {
+            bestScore = score;
+            best = box;
+            bestAxis = axis;
+          }
+        }
+      }
+      if (best < 0) {
+        // every box is a single cell, so nothing can be cut.
+        break;
+      }
+
+      int start = starts[best];
+      int end = starts[best + 1];
+      for (int k = start; k < end; k++) {
+        keys[k] = coordinate(cells[k], bestAxis) << (3 * BITS) | cells[k];
+      }
+      Arrays.sort(keys, start, end);
+      long total = 0;
+      for (int k = start; k < end; k++) {
+        cells[k] = keys[k] & (cellCount - 1);
+        total += pixels[cells[k]];
+      }
+      // cut after the cell where half of the pixels are reached, leaving both halves non-empty.
+      long half = 0;
+      int cut = start + 1;
+      while (cut < end - 1 && (half += pixels[cells[cut - 1]]) * 2 < total) {
+        cut++;
+      }
+      System.arraycopy(starts, best + 1, starts, best + 2, boxes - best);
+      starts[best + 1] = cut;
+      boxes++;
+    }
+
+    int[] colors = new int[boxes];
+    for (int box = 0; box < boxes; box++) {
+      long population = 0;
+      long[] sum = new long[3];
+      for (int k = starts[box]; k < starts[box + 1]; k++) {
+        population += pixels[cells[k]];
+        for (int h = 0; h < 3; h++) {
+          sum[h] += histogram[4 * cells[k] + 1 + h];
+        }
+      }
+      int color = 0;
+      for (int h = 0; h < 3; h++) {
+        color = (color << 8) | (int) ((2 * sum[h] + population) / (2 * population));
+      }
+      colors[box] = color;
+    }
+    return new Palette(colors);
+  }
+
+  /**
+   * Getter for the colors of the palette.
+   *
+   * @return The colors, as packed 0xRRGGBB values.
+   */
+  int[] getColors() {
+    return colors.clone();
+  }
+
+  @Override
+  public int quantize(int red, int green, int blue) {
+    return cache[cellOf(IRaster.clamp(red), IRaster.clamp(green), IRaster.clamp(blue))];
+  }
+
+  /**
+   * Replaces every pixel of a raster with its palette color, without dithering.
+   *
+   * @param data The raster, which is changed in place.
+   */
+  void apply(IRaster data) {
+    int width = data.getWidth();
+    TileExecutor.forEachBand(width, data.getHeight(), (rowStart, rowEnd) -> {
+      int[] row = new int[width];
+      for (int i = rowStart; i < rowEnd; i++) {
+        data.readRowRGB(i, row);
+        for (int j = 0; j < width; j++) {
+          int rgb = row[j];
+          row[j] = cache[cellOf((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF)];
+        }
+        data.writeRowRGB(i, row);
+      }
+    });
+  }
+
+  /**
+   * This helper method finds the palette color closest to a color, by squared distance.
+   *
+   * @param red   The red value.
+   * @param green The green value.
+   * @param blue  The blue value.
+   * @return The index of the closest color, the lowest one if there is a tie.
+   */
+  private int nearest(int red, int green, int blue) {
+    int best = 0;
+    int bestDistance = Integer.MAX_VALUE;
+    for (int k = 0; k < colors.length; k++) {
+      int dr = ((colors[k] >> 16) & 0xFF) - red;
+      int dg = ((colors[k] >> 8) & 0xFF) - green;
+      int db = (colors[k] & 0xFF) - blue;
+      int distance = dr * dr + dg * dg + db * db;
+      if (distance < bestDistance) {
+        bestDistance = distance;
+        best = k;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * This helper method finds the cell of a color.
+   *
+   * @param red   The red value, from 0 to 255.
+   * @param green The green value, from 0 to 255.
+   * @param blue  The blue value, from 0 to 255.
+   * @return The index of the cell.
+   */
+  private static int cellOf(int red, int green, int blue) {
+    int shift = 8 - BITS;
+    return (red >> shift) << (2 * BITS) | (green >> shift) << BITS | (blue >> shift);
+  }
+
+  /**
+   * This helper method finds one coordinate of a cell.
+   *
+   * @param cell The index of the cell.
+   * @param axis The color (0, 1, 2 for red, green, blue).
+   * @return The coordinate, from 0 to 31.
+   */
+  private static int coordinate(int cell, int axis) {
+    return (cell >> (BITS * (2 - axis))) & (CELLS - 1);
+  }
+}
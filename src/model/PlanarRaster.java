@@ -0,0 +1,157 @@
+package model;
+
+import java.io.IOException;
+
+/**
+ * This class is a raster that stores each color in its own byte plane. Every plane holds one byte
+ * per pixel, row by row, so the raster uses a quarter of the memory of a packed one and a kernel
+ * that works on one color walks one dense array.
+ */
+class PlanarRaster implements IRaster {
+
+  /**
+   * The red, green and blue planes, in that order.
+   */
+  private final byte[][] planes;
+
+  /**
+   * The width of the raster.
+   */
+  private final int width;
+
+  /**
+   * The height of the raster.
+   */
+  private final int height;
+
+  /**
+   * Constructs an empty (black) planar raster.
+   *
+   * @param width  The width of the raster.
+   * @param height The height of the raster.
+   */
+  PlanarRaster(int width, int height) {
+    this(new byte[][]{new byte[width * height], new byte[width * height],
+                      new byte[width * height]}, width, height);
+  }
+
+  /**
+   * Constructs a planar raster around existing planes. The planes are used as is, not copied.
+   *
+   * @param planes The red, green and blue planes, each holding width * height bytes.
+   * @param width  The width of the raster.
+   * @param height The height of the raster.
+   */
+  PlanarRaster(byte[][] planes, int width, int height) {
+    this.planes = planes;
+    this.width = width;
+    this.height = height;
+  }
+
+  @Override
+  public int getWidth() {
+    return width;
+  }
+
+  @Override
+  public int getHeight() {
+    return height;
+  }
+
+  @Override
+  public StorageMode getMode() {
+    return StorageMode.PLANAR;
+  }
+
+  @Override
+  public int get(int row, int col, int channel) {
+    return planes[channel][row * width + col] & 0xFF;
+  }
+
+  @Override
+  public void set(int row, int col, int channel, int value) {
+    planes[channel][row * width + col] = (byte) IRaster.clamp(value);
+  }
+
+  @Override
+  public int getRGB(int row, int col) {
+    int index = row * width + col;
+    return ((planes[0][index] & 0xFF) << 16) | ((planes[1][index] & 0xFF) << 8)
+            | (planes[2][index] & 0xFF);
+  }
+
+  @Override
+  public void setRGB(int row, int col, int rgb) {
+    int index = row * width + col;
+    planes[0][index] = (byte) (rgb >> 16);
+    planes[1][index] = (byte) (rgb >> 8);
+    planes[2][index] = (byte) rgb;
+  }
+
+  @Override
+  public void readRow(int row, int channel, int[] dst) {
+    byte[] plane = planes[channel];
+    int start = row * width;
+    for (int j = 0; j < width; j++) {
+      dst[j] = plane[start + j] & 0xFF;
+    }
+  }
+
+  @Override
+  public void readRow(int row, int[] red, int[] green, int[] blue) {
+    readRow(row, 0, red);
+    readRow(row, 1, green);
+    readRow(row, 2, blue);
+  }
+
+  @Override
+  public void writeRow(int row, int[] red, int[] green, int[] blue) {
+    writePlaneRow(planes[0], row, red);
+    writePlaneRow(planes[1], row, green);
+    writePlaneRow(planes[2], row, blue);
+  }
+
+  @Override
+  public void readRowRGB(int row, int[] dst) {
+    int start = row * width;
+    for (int j = 0; j < width; j++) {
+      dst[j] = ((planes[0][start + j] & 0xFF) << 16) | ((planes[1][start + j] & 0xFF) << 8)
+              | (planes[2][start + j] & 0xFF);
+    }
+  }
+
+  @Override
+  public void writeRowRGB(int row, int[] src) {
+    int start = row * width;
+    for (int j = 0; j < width; j++) {
+      planes[0][start + j] = (byte) (src[j] >> 16);
+      planes[1][start + j] = (byte) (src[j] >> 8);
+      planes[2][start + j] = (byte) src[j];
+    }
+  }
+
+  @Override
+  public IRaster copy() {
+    return new PlanarRaster(new byte[][]{planes[0].clone(), planes[1].clone(),
+                                         planes[2].clone()}, width, height);
+  }
+
+  @Override
+  public void write(String filename) throws IOException {
+    ImageUtil.writeImage(planes, width, height, filename);
+  }
+
+  /**
+   * This helper method writes one row of one plane, clamping the values.
+   *
+   * @param plane The plane to write into.
+   * @param row   The row to write.
+   * @param src   The new values.
+   */
+  private void writePlaneRow(byte[] plane, int row, int[] src) {
+    int start = row * width;
+    for (int j = 0; j < width; j++) {
+      plane[start + j] = (byte) IRaster.clamp(src[j]);
+    }
+  }
+}
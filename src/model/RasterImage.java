@@ -0,0 +1,235 @@
+package model;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Vector;
+
+/**
+ * This class shows a raster to ImageIO as a RenderedImage without copying it into a BufferedImage
+ * first. Image writers ask for the pixels a strip or a row at a time, and only that part of the
+ * raster is read, so a raster that doesn't fit on the heap can still be saved.
+ */
+class RasterImage implements RenderedImage {
+
+  /**
+   * The height of one tile. Tiles are strips that span the whole width of the image.
+   */
+  private static final int TILE_HEIGHT = 64;
+
+  /**
+   * The largest area (in pixels) that is copied onto the heap when a writer asks for it. Larger
+   * areas are read from the raster while the writer walks over them.
+   */
+  private static final int EAGER_LIMIT = 1 << 22;
+
+  /**
+   * The bit masks of red, green and blue in a packed pixel.
+   */
+  private static final int[] MASKS = {0xFF0000, 0xFF00, 0xFF};
+
+  /**
+   * The raster holding the pixels.
+   */
+  private final IRaster raster;
+
+  /**
+   * Constructs a RenderedImage view of a raster.
+   *
+   * @param raster The raster to show.
+   */
+  RasterImage(IRaster raster) {
+    this.raster = raster;
+  }
+
+  @Override
+  public Vector<RenderedImage> getSources() {
+    return null;
+  }
+
+  @Override
+  public Object getProperty(String name) {
+    return java.awt.Image.UndefinedProperty;
+  }
+
+  @Override
+  public String[] getPropertyNames() {
+    return null;
+  }
+
+  @Override
+  public ColorModel getColorModel() {
+    return new DirectColorModel(24, MASKS[0], MASKS[1], MASKS[2]);
+  }
+
+  @Override
+  public SampleModel getSampleModel() {
+    return new SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, getWidth(), TILE_HEIGHT, MASKS);
+  }
+
+  @Override
+  public int getWidth() {
+    return raster.getWidth();
+  }
+
+  @Override
+  public int getHeight() {
+    return raster.getHeight();
+  }
+
+  @Override
+  public int getMinX() {
+    return 0;
+  }
+
+  @Override
+  public int getMinY() {
+    return 0;
+  }
+
+  @Override
+  public int getNumXTiles() {
+    return 1;
+  }
+
+  @Override
+  public int getNumYTiles() {
+    return (getHeight() + TILE_HEIGHT - 1) / TILE_HEIGHT;
+  }
+
+  @Override
+  public int getMinTileX() {
+    return 0;
+  }
+
+  @Override
+  public int getMinTileY() {
+    return 0;
+  }
+
+  @Override
+  public int getTileWidth() {
+    return getWidth();
+  }
+
+  @Override
+  public int getTileHeight() {
+    return TILE_HEIGHT;
+  }
+
+  @Override
+  public int getTileGridXOffset() {
+    return 0;
+  }
+
+  @Override
+  public int getTileGridYOffset() {
+    return 0;
+  }
+
+  @Override
+  public Raster getTile(int tileX, int tileY) {
+    int top = tileY * TILE_HEIGHT;
+    return copyArea(new Rectangle(0, top, getWidth(), Math.min(TILE_HEIGHT, getHeight() - top)));
+  }
+
+  @Override
+  public Raster getData() {
+    return getData(new Rectangle(0, 0, getWidth(), getHeight()));
+  }
+
+  @Override
+  public Raster getData(Rectangle rect) {
+    if ((long) rect.width * rect.height <= EAGER_LIMIT) {
+      return copyArea(rect);
+    }
+    SampleModel model = new SinglePixelPackedSampleModel(DataBuffer.TYPE_INT, rect.width,
+            rect.height, MASKS);
+    return Raster.createRaster(model, new LazyBuffer(rect), new Point(rect.x, rect.y));
+  }
+
+  @Override
+  public WritableRaster copyData(WritableRaster dst) {
+    if (dst == null) {
+      return copyArea(new Rectangle(0, 0, getWidth(), getHeight()));
+    }
+    dst.setRect(getData(dst.getBounds()));
+    return dst;
+  }
+
+  /**
+   * This helper method copies an area of the raster onto the heap.
+   *
+   * @param rect The area to copy.
+   * @return A packed raster holding the area.
+   */
+  private WritableRaster copyArea(Rectangle rect) {
+    WritableRaster out = Raster.createPackedRaster(DataBuffer.TYPE_INT, rect.width, rect.height,
+            MASKS, new Point(rect.x, rect.y));
+    int[] data = ((DataBufferInt) out.getDataBuffer()).getData();
+    int[] row = new int[getWidth()];
+    for (int i = 0; i < rect.height; i++) {
+      raster.readRowRGB(rect.y + i, row);
+      System.arraycopy(row, rect.x, data, i * rect.width, rect.width);
+    }
+    return out;
+  }
+
+  /**
+   * This class is a data buffer that reads the pixels of an area of the raster as they are asked
+   * for. It keeps the last row it read, so a writer walking the area row by row reads each row of
+   * the raster once.
+   */
+  private class LazyBuffer extends DataBuffer {
+
+    /**
+     * The area of the raster this buffer shows.
+     */
+    private final Rectangle area;
+
+    /**
+     * The last row that was read, in raster coordinates.
+     */
+    private int cachedRow;
+
+    /**
+     * The packed pixels of the last row that was read.
+     */
+    private final int[] row;
+
+    /**
+     * Constructs a buffer showing an area of the raster.
+     *
+     * @param area The area to show.
+     */
+    LazyBuffer(Rectangle area) {
+      super(DataBuffer.TYPE_INT, area.width * area.height);
+      this.area = area;
+      this.cachedRow = -1;
+      this.row = new int[raster.getWidth()];
+    }
+
+    @Override
+    public int getElem(int bank, int i) {
+      int y = area.y + i / area.width;
+      if (y != cachedRow) {
+        raster.readRowRGB(y, row);
+        cachedRow = y;
+      }
+      return row[area.x + i % area.width];
+    }
+
+    @Override
+    public void setElem(int bank, int i, int val) {
+      throw new UnsupportedOperationException("This image can't be written to.");
+    }
+  }
+}
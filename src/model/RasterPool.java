@@ -0,0 +1,122 @@
+package model;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * This class is a pool of scratch rasters. Operations that read from one raster and write into
+ * another take their destination from the pool and give the old raster back, so running the same
+ * filter over and over doesn't allocate a new image every time. Rasters are pooled by storage mode
+ * and size, and are only softly held, so the garbage collector can still take them back when the
+ * heap runs low.
+ */
+final class RasterPool {
+
+  /**
+   * The largest number of spare rasters kept for one storage mode and size.
+   */
+  private static final int MAX_PER_KEY = 2;
+
+  /**
+   * The spare rasters, by storage mode and size.
+   */
+  private static final Map<Key, ArrayDeque<SoftReference<IRaster>>> SPARES = new HashMap<>();
+
+  /**
+   * This class only has static methods, so it can't be constructed.
+   */
+  private RasterPool() {
+  }
+
+  /**
+   * Takes a raster with the same storage mode and size as the given one out of the pool, or creates
+   * one if there is none. The contents of the raster are undefined; it's meant to be overwritten
+   * completely.
+   *
+   * @param like The raster whose storage mode and size to match.
+   * @return A raster with the same storage mode and size.
+   */
+  static IRaster acquire(IRaster like) {
+    Key key = new Key(like.getMode(), like.getWidth(), like.getHeight());
+    synchronized (SPARES) {
+      ArrayDeque<SoftReference<IRaster>> spares = SPARES.get(key);
+      while (spares != null && !spares.isEmpty()) {
+        IRaster raster = spares.pop().get();
+        if (raster != null) {
+          return raster;
+        }
+      }
+    }
+    return like.getMode().create(like.getWidth(), like.getHeight());
+  }
+
+  /**
+   * Gives a raster back to the pool. The raster must not be used by its previous owner anymore.
+   *
+   * @param raster The raster to give back.
+   */
+  static void release(IRaster raster) {
+    Key key = new Key(raster.getMode(), raster.getWidth(), raster.getHeight());
+    synchronized (SPARES) {
+      ArrayDeque<SoftReference<IRaster>> spares = SPARES.computeIfAbsent(key,
+          k -> new ArrayDeque<>());
+      if (spares.size() < MAX_PER_KEY) {
+        spares.push(new SoftReference<>(raster));
+      }
+    }
+  }
+
+  /**
+   * This class is the key rasters are pooled by: their storage mode and size.
+   */
+  private static final class Key {
+
+    /**
+     * The storage mode.
+     */
+    private final StorageMode mode;
+
+    /**
+     * The width.
+     */
+    private final int width;
+
+    /**
+     * The height.
+     */
+    private final int height;
+
+    /**
+     * Constructs a key.
+     *
+     * @param mode   The storage mode.
+     * @param width  The width.
+     * @param height The height.
+     */
+    Key(StorageMode mode, int width, int height) {
+      this.mode = mode;
+      this.width = width;
+      this.height = height;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return other.mode == mode && other.width == width && other.height == height;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(mode, width, height);
+    }
+  }
+}
@@ -0,0 +1,34 @@
+package model;
+
+/**
+ * This class multiplies colors with a color matrix one pixel at a time. It works everywhere, and
+ * is the reference the other backends are compared with.
+ */
+final class ScalarColorMatrix implements IColorMatrixBackend {
+
+  @Override
+  public void apply(double[] matrix, int[] red, int[] green, int[] blue, int length) {
+    apply(matrix, red, green, blue, 0, length);
+  }
+
+  /**
+   * Multiplies a part of a row with a color matrix, in place.
+   *
+   * @param matrix The matrix, row by row.
+   * @param red    The red values of the row.
+   * @param green  The green values of the row.
+   * @param blue   The blue values of the row.
+   * @param start  The first pixel to change.
+   * @param end    The pixel after the last pixel to change.
+   */
+  void apply(double[] matrix, int[] red, int[] green, int[] blue, int start, int end) {
+    for (int j = start; j < end; j++) {
+      int r = red[j];
+      int g = green[j];
+      int b = blue[j];
+      red[j] = IRaster.clamp((int) Math.round(r * matrix[0] + g * matrix[1] + b * matrix[2]));
+      green[j] = IRaster.clamp((int) Math.round(r * matrix[3] + g * matrix[4] + b * matrix[5]));
+      blue[j] = IRaster.clamp((int) Math.round(r * matrix[6] + g * matrix[7] + b * matrix[8]));
+    }
+  }
+}
@@ -0,0 +1,150 @@
+package model;
+
+/**
+ * This class finds the seed closest to a pixel without looking at every seed. The image is split
+ * into square cells of about one seed each, and every cell keeps a list of the seeds in it. A
+ * search starts in the cell of the pixel and goes out one ring of cells at a time, and stops as
+ * soon as the next ring is farther away than the closest seed found so far. Seeds that are spread
+ * over the image are found after the first two or three rings, however many seeds there are.
+ *
+ * <p>
+ * Distances are compared squared, in integers, which picks the same seed as comparing the real
+ * distances. Ties go to the seed that comes first, the same as checking the seeds in order.
+ * </p>
+ */
+final class SeedGrid {
+
+  /**
+   * The row of every seed.
+   */
+  private final int[] rows;
+
+  /**
+   * The column of every seed.
+   */
+  private final int[] cols;
+
+  /**
+   * The length of the side of a cell, in pixels.
+   */
+  private final int size;
+
+  /**
+   * The number of rows of cells.
+   */
+  private final int gridRows;
+
+  /**
+   * The number of columns of cells.
+   */
+  private final int gridCols;
+
+  /**
+   * Where the seeds of every cell start in {@link #cellSeeds}, with one more at the end.
+   */
+  private final int[] cellStart;
+
+  /**
+   * The seeds of every cell, one cell after the other, in order within a cell.
+   */
+  private final int[] cellSeeds;
+
+  /**
+   * Constructs the grid for some seeds.
+   *
+   * @param rows   The row of every seed.
+   * @param cols   The column of every seed.
+   * @param height The height of the image.
+   * @param width  The width of the image.
+   * @throws IllegalArgumentException if there are no seeds, or not as many rows as columns.
+   */
+  SeedGrid(int[] rows, int[] cols, int height, int width) throws IllegalArgumentException {
+    if (rows.length == 0 || rows.length != cols.length) {
+      throw new IllegalArgumentException(
+              "There must be at least one seed, with a row and a column");
+    }
+    this.rows = rows.clone();
+    this.cols = cols.clone();
+    int count = rows.length;
+    this.size = Math.max(1, (int) Math.ceil(Math.sqrt((double) height * width / count)));
+    this.gridRows = (height + size - 1) / size;
+    this.gridCols = (width + size - 1) / size;
+
+    // a counting sort of the seeds by cell, which keeps them in order within a cell.
+    this.cellStart = new int[gridRows * gridCols + 1];
+    for (int k = 0; k < count; k++) {
+      cellStart[cellOf(this.rows[k], this.cols[k]) + 1]++;
+    }
+    for (int cell = 0; cell < gridRows * gridCols; cell++) {
+      cellStart[cell + 1] += cellStart[cell];
+    }
+    this.cellSeeds = new int[count];
+    int[] next = new int[gridRows * gridCols];
+    for (int k = 0; k < count; k++) {
+      int cell = cellOf(this.rows[k], this.cols[k]);
+      cellSeeds[cellStart[cell] + next[cell]++] = k;
+    }
+  }
+
+  /**
+   * Finds the seed closest to a pixel.
+   *
+   * @param row The row of the pixel.
+   * @param col The column of the pixel.
+   * @return The index of the closest seed, the lowest one if there is a tie.
+   */
+  int nearest(int row, int col) {
+    int ci = Math.min(row / size, gridRows - 1);
+    int cj = Math.min(col / size, gridCols - 1);
+    int rings = Math.max(gridRows, gridCols);
+    int best = -1;
+    long bestDistance = Long.MAX_VALUE;
+
+    for (int r = 0; r < rings; r++) {
+      if (r > 0) {
+        // every pixel of ring r is at least this far from the pixel along a row or a column.
+        long gap = (long) (r - 1) * size + 1;
+        if (gap * gap > bestDistance) {
+          break;
+        }
+      }
+      for (int di = -r; di <= r; di++) {
+        int gi = ci + di;
+        if (gi < 0 || gi >= gridRows) {
+          continue;
+        }
+        // inside the ring only the first and last cells of a row of cells are on it.
+        int step = di == -r || di == r ? 1 : Math.max(1, 2 * r);
+        for (int dj = -r; dj <= r; dj += step) {
+          int gj = cj + dj;
+          if (gj < 0 || gj >= gridCols) {
+            continue;
+          }
+          int cell = gi * gridCols + gj;
+          for (int s = cellStart[cell]; s < cellStart[cell + 1]; s++) {
+            int k = cellSeeds[s];
+            long dr = rows[k] - row;
+            long dc = cols[k] - col;
+            long distance = dr * dr + dc * dc;
+            if (distance < bestDistance || (distance == bestDistance && k < best)) {
+              bestDistance = distance;
+              best = k;
+            }
+          }
+        }
+      }
+    }
+    return best;
+  }
+
+  /**
+   * This helper method finds the cell of a pixel.
+   *
+   * @param row The row of the pixel.
+   * @param col The column of the pixel.
+   * @return The index of the cell.
+   */
+  private int cellOf(int row, int col) {
+    return Math.min(row / size, gridRows - 1) * gridCols + Math.min(col / size, gridCols - 1);
+  }
+}
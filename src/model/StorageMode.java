@@ -0,0 +1,122 @@
+package model;
+
+import java.io.IOException;
+
+/**
+ * This enum represents the ways the pixels of an image can be stored in memory. Every mode holds
+ * the exact same values (0-255 per color), they only differ in how much memory they use and in how
+ * the values are laid out.
+ */
+public enum StorageMode {
+
+  /**
+   * One int per pixel, with the colors packed as 0xRRGGBB. This is the same layout as
+   * BufferedImage.TYPE_INT_RGB, so reading, saving and displaying are cheap.
+   */
+  PACKED {
+    @Override
+    IRaster create(int width, int height) {
+      return new PackedRaster(width, height);
+    }
+
+    @Override
+    IRaster read(String filename) throws IOException {
+      int[] data = ImageUtil.readImage(filename);
+      return new PackedRaster(data, ImageUtil.getWidth(filename), ImageUtil.getHeight(filename));
+    }
+
+    @Override
+    int bytesPerPixel() {
+      return 4;
+    }
+  },
+
+  /**
+   * Three byte planes (red, green and blue), one byte per color value. This uses a quarter of the
+   * memory of the packed mode, and each color can be walked as one dense plane.
+   */
+  PLANAR {
+    @Override
+    IRaster create(int width, int height) {
+      return new PlanarRaster(width, height);
+    }
+
+    @Override
+    IRaster read(String filename) throws IOException {
+      byte[][] planes = ImageUtil.readImagePlanar(filename);
+      return new PlanarRaster(planes, ImageUtil.getWidth(filename), ImageUtil.getHeight(filename));
+    }
+
+    @Override
+    int bytesPerPixel() {
+      return 3;
+    }
+  },
+
+  /**
+   * Three bytes per pixel, kept off the heap in a memory-mapped temporary file. Images stored this
+   * way can be bigger than the heap (and have more than 2^31 color values); the operating system
+   * pages the pixels in and out as they are used.
+   */
+  MAPPED {
+    @Override
+    IRaster create(int width, int height) {
+      return new MappedRaster(width, height);
+    }
+
+    @Override
+    IRaster read(String filename) throws IOException {
+      IRaster raster = new MappedRaster(ImageUtil.getWidth(filename),
+              ImageUtil.getHeight(filename));
+      ImageUtil.readImageRows(filename, raster::writeRowRGB);
+      return raster;
+    }
+
+    @Override
+    int bytesPerPixel() {
+      return 0;
+    }
+  };
+
+  /**
+   * Creates an empty (black) raster that uses this storage mode.
+   *
+   * @param width  The width of the raster.
+   * @param height The height of the raster.
+   * @return The new raster.
+   */
+  abstract IRaster create(int width, int height);
+
+  /**
+   * Reads an image file into a raster that uses this storage mode.
+   *
+   * @param filename The path of the file.
+   * @return The raster holding the image.
+   * @throws IOException if the file can't be read.
+   */
+  abstract IRaster read(String filename) throws IOException;
+
+  /**
+   * Getter for the number of heap bytes one pixel takes up in this storage mode.
+   *
+   * @return The number of bytes per pixel on the heap.
+   */
+  abstract int bytesPerPixel();
+
+  /**
+   * Decides how an image with the given dimensions should be stored. This mode is used if the
+   * image fits comfortably on the heap (the history and the filters need room for a few more
+   * copies), otherwise the image is stored off the heap.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @return This mode, or {@link #MAPPED} if the image is too big for the heap.
+   */
+  StorageMode fitting(int width, int height) {
+    long bytes = (long) width * height * bytesPerPixel();
+    if (bytes > Runtime.getRuntime().maxMemory() / 8) {
+      return MAPPED;
+    }
+    return this;
+  }
+}
@@ -0,0 +1,289 @@
+package model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class splits an image into superpixels with SLIC (simple linear iterative clustering):
+ * cells of about the same size whose edges follow the edges in the image. The centers start out
+ * on an even grid, each moved to the smoothest spot next to it so that none starts on an edge.
+ * Then, a few times over, every pixel joins the center it's closest to, and every center moves to
+ * the average position and color of its pixels.
+ *
+ * <p>
+ * Closeness mixes color and position: the squared difference in color, plus the squared distance
+ * times (compactness / spacing)^2, where the spacing is the distance between centers on the grid.
+ * A high compactness gives square, even cells; a low one lets cells follow the colors more. A
+ * pixel only looks at centers within one spacing of it, found through a grid of buckets, so every
+ * round takes time in proportion to the number of pixels however many centers there are. Every
+ * pixel is assigned on its own and the sums are kept by each thread on its own, so the rows are
+ * worked on in parallel and the result is the same for any number of threads.
+ * </p>
+ */
+final class Superpixels {
+
+  /**
+   * The number of values summed for every center: its pixel count, the red, green and blue sums,
+   * and the row and column sums.
+   */
+  private static final int SUMS = 6;
+
+  /**
+   * This class only has static methods, so it can't be constructed.
+   */
+  private Superpixels() {
+  }
+
+  /**
+   * Splits a raster into superpixels.
+   *
+   * @param data        The raster.
+   * @param count       The number of superpixels wanted. The grid of centers is the one closest
+   *                    to it in shape, so the actual number may be a little different.
+   * @param iterations  The number of rounds of assigning pixels and moving the centers.
+   * @param compactness How much position counts against color.
+   * @return The superpixel of every pixel, row by row, numbered from 0 to
+   *         {@link #centers(int, int, int)} - 1.
+   */
+  static int[] labels(IRaster data, int count, int iterations, double compactness) {
+    int width = data.getWidth();
+    int height = data.getHeight();
+    double spacing = Math.sqrt((double) width * height / count);
+    int gridRows = gridSize(height, spacing);
+    int gridCols = gridSize(width, spacing);
+    int centers = gridRows * gridCols;
+
+    // every pixel starts in the grid cell it's in.
+    int[] labels = new int[width * height];
+    for (int i = 0; i < height; i++) {
+      int base = (int) ((long) i * gridRows / height) * gridCols;
+      for (int j = 0; j < width; j++) {
+        labels[i * width + j] = base + (int) ((long) j * gridCols / width);
+      }
+    }
+
+    // the row, column, red, green and blue of every center.
+    double[][] center = new double[5][centers];
+    for (int k = 0; k < centers; k++) {
+      int row = (int) ((k / gridCols + 0.5) * height / gridRows);
+      int col = (int) ((k % gridCols + 0.5) * width / gridCols);
+      int smoothest = smoothest(data, row, col);
+      center[0][k] = smoothest / width;
+      center[1][k] = smoothest % width;
+      int rgb = data.getRGB(smoothest / width, smoothest % width);
+      center[2][k] = (rgb >> 16) & 0xFF;
+      center[3][k] = (rgb >> 8) & 0xFF;
+      center[4][k] = rgb & 0xFF;
+    }
+
+    double weight = compactness * compactness / (spacing * spacing);
+    int reach = Math.max(1, (int) Math.ceil(spacing));
+    for (int round = 0; round < iterations; round++) {
+      assign(data, labels, center, reach, spacing, weight);
+      move(data, labels, center);
+    }
+    return labels;
+  }
+
+  /**
+   * Computes the number of superpixels {@link #labels(IRaster, int, int, double)} makes.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @param count  The number of superpixels wanted.
+   * @return The number of superpixels.
+   */
+  static int centers(int width, int height, int count) {
+    double spacing = Math.sqrt((double) width * height / count);
+    return gridSize(height, spacing) * gridSize(width, spacing);
+  }
+
+  /**
+   * This helper method finds the number of centers along one side of the image.
+   *
+   * @param length  The length of the side.
+   * @param spacing The distance between centers.
+   * @return The number of centers, at least 1 and at most the length.
+   */
+  private static int gridSize(int length, double spacing) {
+    return (int) Math.max(1, Math.min(length, Math.round(length / spacing)));
+  }
+
+  /**
+   * This helper method finds the pixel around a spot (in the 3x3 square centered on it) where the
+   * colors change the least, so that a center doesn't start on an edge or on a lone pixel.
+   *
+   * @param data The raster.
+   * @param row  The row of the spot.
+   * @param col  The column of the spot.
+   * @return The index (row * width + column) of the smoothest pixel, the first one if there is a
+   *         tie.
+   */
+  private static int smoothest(IRaster data, int row, int col) {
+    int width = data.getWidth();
+    int height = data.getHeight();
+    int best = row * width + col;
+    long bestGradient = Long.MAX_VALUE;
+    for (int i = Math.max(0, row - 1); i <= Math.min(height - 1, row + 1); i++) {
+      for (int j = Math.max(0, col - 1); j <= Math.min(width - 1, col + 1); j++) {
+        long gradient = difference(data.getRGB(i, Math.max(0, j - 1)),
+                data.getRGB(i, Math.min(width - 1, j + 1)))
+                + difference(data.getRGB(Math.max(0, i - 1), j),
+                data.getRGB(Math.min(height - 1, i + 1), j));
+        if (gradient < bestGradient) {
+          bestGradient = gradient;
+          best = i * width + j;
+        }
+      }
+    }
+    return best;
+  }
+
+  /**
+   * This helper method computes the squared difference between two colors.
+   *
+   * @param first  The first color, as a packed 0xRRGGBB value.
+   * @param second The second color, as a packed 0xRRGGBB value.
+   * @return The sum of the squared differences of red, green and blue.
+   */
+  private static long difference(int first, int second) {
+    long total = 0;
+    for (int shift = 0; shift <= 16; shift += 8) {
+      int d = ((first >> shift) & 0xFF) - ((second >> shift) & 0xFF);
+      total += d * d;
+    }
+    return total;
+  }
+
+  /**
+   * This helper method assigns every pixel to the closest center within one spacing of it. A pixel
+   * with no center that close keeps the one it had.
+   *
+   * @param data    The raster.
+   * @param labels  The center of every pixel, which is updated.
+   * @param center  The row, column, red, green and blue of every center.
+   * @param reach   The spacing, rounded up: the size of a bucket.
+   * @param spacing The distance between centers on the grid.
+   * @param weight  How much a squared distance counts against a squared color difference.
+   */
+  private static void assign(IRaster data, int[] labels, double[][] center, int reach,
+                             double spacing, double weight) {
+    int width = data.getWidth();
+    int height = data.getHeight();
+    int centers = center[0].length;
+
+    // the centers in every bucket, one bucket after the other, in order within a bucket.
+    int bucketRows = (height + reach - 1) / reach;
+    int bucketCols = (width + reach - 1) / reach;
+    int[] start = new int[bucketRows * bucketCols + 1];
+    int[] bucketOf = new int[centers];
+    for (int k = 0; k < centers; k++) {
+      int bi = Math.min(bucketRows - 1, (int) center[0][k] / reach);
+      int bj = Math.min(bucketCols - 1, (int) center[1][k] / reach);
+      bucketOf[k] = bi * bucketCols + bj;
+      start[bucketOf[k] + 1]++;
+    }
+    for (int b = 0; b < bucketRows * bucketCols; b++) {
+      start[b + 1] += start[b];
+    }
+    int[] members = new int[centers];
+    int[] filled = new int[bucketRows * bucketCols];
+    for (int k = 0; k < centers; k++) {
+      members[start[bucketOf[k]] + filled[bucketOf[k]]++] = k;
+    }
+
+    double[] rows = center[0];
+    double[] cols = center[1];
+    double[] reds = center[2];
+    double[] greens = center[3];
+    double[] blues = center[4];
+    TileExecutor.forEachBand(width, height, (rowStart, rowEnd) -> {
+      int[] row = new int[width];
+      for (int i = rowStart; i < rowEnd; i++) {
+        data.readRowRGB(i, row);
+        int bi = i / reach;
+        for (int j = 0; j < width; j++) {
+          int red = (row[j] >> 16) & 0xFF;
+          int green = (row[j] >> 8) & 0xFF;
+          int blue = row[j] & 0xFF;
+          int bj = j / reach;
+          int best = -1;
+          double bestDistance = Double.MAX_VALUE;
+          for (int ni = Math.max(0, bi - 1); ni <= Math.min(bucketRows - 1, bi + 1); ni++) {
+            for (int nj = Math.max(0, bj - 1); nj <= Math.min(bucketCols - 1, bj + 1); nj++) {
+              int bucket = ni * bucketCols + nj;
+              for (int m = start[bucket]; m < start[bucket + 1]; m++) {
+                int k = members[m];
+                double dy = rows[k] - i;
+                double dx = cols[k] - j;
+                if (Math.abs(dy) > spacing || Math.abs(dx) > spacing) {
+                  continue;
+                }
+                double dr = reds[k] - red;
+                double dg = greens[k] - green;
+                double db = blues[k] - blue;
+                double distance = dr * dr + dg * dg + db * db + weight * (dy * dy + dx * dx);
+                if (distance < bestDistance || (distance == bestDistance && k < best)) {
+                  bestDistance = distance;
+                  best = k;
+                }
+              }
+            }
+          }
+          if (best >= 0) {
+            labels[i * width + j] = best;
+          }
+        }
+      }
+    });
+  }
+
+  /**
+   * This helper method moves every center to the average position and color of its pixels. Each
+   * thread sums the rows it takes on its own, and the sums are added up at the end. A center with
+   * no pixels stays where it is.
+   *
+   * @param data   The raster.
+   * @param labels The center of every pixel.
+   * @param center The row, column, red, green and blue of every center, which are updated.
+   */
+  private static void move(IRaster data, int[] labels, double[][] center) {
+    int width = data.getWidth();
+    int height = data.getHeight();
+    int centers = center[0].length;
+    long[] sums = new long[SUMS * centers];
+    AtomicInteger nextRow = new AtomicInteger();
+    TileExecutor.forEachWorker((long) width * height, () -> {
+      long[] local = new long[SUMS * centers];
+      int[] row = new int[width];
+      for (int i = nextRow.getAndIncrement(); i < height; i = nextRow.getAndIncrement()) {
+        data.readRowRGB(i, row);
+        int offset = i * width;
+        for (int j = 0; j < width; j++) {
+          int spot = SUMS * labels[offset + j];
+          local[spot]++;
+          local[spot + 1] += (row[j] >> 16) & 0xFF;
+          local[spot + 2] += (row[j] >> 8) & 0xFF;
+          local[spot + 3] += row[j] & 0xFF;
+          local[spot + 4] += i;
+          local[spot + 5] += j;
+        }
+      }
+      synchronized (sums) {
+        for (int k = 0; k < sums.length; k++) {
+          sums[k] += local[k];
+        }
+      }
+    });
+
+    for (int k = 0; k < centers; k++) {
+      double pixels = sums[SUMS * k];
+      if (pixels > 0) {
+        center[0][k] = sums[SUMS * k + 4] / pixels;
+        center[1][k] = sums[SUMS * k + 5] / pixels;
+        center[2][k] = sums[SUMS * k + 1] / pixels;
+        center[3][k] = sums[SUMS * k + 2] / pixels;
+        center[4][k] = sums[SUMS * k + 3] / pixels;
+      }
+    }
+  }
+}
@@ -0,0 +1,295 @@
+package model;
+
+import java.util.Random;
+
+/**
+ * This class dithers rasters to black and white with a threshold map: a small square of
+ * thresholds that is tiled over the image, and a pixel becomes white if it is brighter than the
+ * threshold at its spot. No pixel depends on any other, so every row is worked on in parallel, and
+ * it's far faster than error diffusion.
+ *
+ * <p>
+ * An ordered (Bayer) map spreads the thresholds in a regular pattern, which gives the familiar
+ * cross-hatched look. A blue-noise map spreads them so that pixels of the same kind are as far
+ * apart as possible without any pattern, which looks much closer to error diffusion. The blue-noise
+ * map is made once with the void-and-cluster method and reused.
+ * </p>
+ */
+final class ThresholdDither {
+
+  /**
+   * The largest Bayer map size that can be asked for.
+   */
+  static final int MAX_BAYER_SIZE = 64;
+
+  /**
+   * The size of the blue-noise map.
+   */
+  static final int BLUE_NOISE_SIZE = 64;
+
+  /**
+   * The spread (standard deviation, in pixels) of the filter that measures how crowded a spot of
+   * the blue-noise map is.
+   */
+  private static final double SIGMA = 1.5;
+
+  /**
+   * The share of the pixels in the first pattern of the blue-noise map.
+   */
+  private static final double INITIAL_SHARE = 0.1;
+
+  /**
+   * The weight of red in a gray value, in ten-thousandths.
+   */
+  private static final int LUMA_RED = 2126;
+
+  /**
+   * The weight of green in a gray value, in ten-thousandths.
+   */
+  private static final int LUMA_GREEN = 7152;
+
+  /**
+   * The weight of blue in a gray value, in ten-thousandths.
+   */
+  private static final int LUMA_BLUE = 722;
+
+  /**
+   * The sum of the weights, which is what a gray value of 1 is in ten-thousandths.
+   */
+  private static final int LUMA_SCALE = LUMA_RED + LUMA_GREEN + LUMA_BLUE;
+
+  /**
+   * This class only has static methods, so it can't be constructed.
+   */
+  private ThresholdDither() {
+  }
+
+  /**
+   * Computes the Bayer map of a size: the order in which the pixels of a size x size square turn
+   * white as the image gets brighter. The map of size 2n is made of four copies of the map of size
+   * n, interleaved.
+   *
+   * @param size The size of the map, a power of two from 2 to 64.
+   * @return The rank of every pixel of the map, row by row, from 0 to size * size - 1.
+   * @throws IllegalArgumentException if the size is not a power of two from 2 to 64.
+   */
+  static int[] bayer(int size) throws IllegalArgumentException {
+    if (size < 2 || size > MAX_BAYER_SIZE || Integer.bitCount(size) != 1) {
+      throw new IllegalArgumentException("The size of an ordered dither must be 2, 4, 8, 16, 32 "
+              + "or 64");
+    }
+    int[] ranks = {0};
+    for (int n = 1; n < size; n *= 2) {
+      int[] next = new int[4 * n * n];
+      for (int i = 0; i < n; i++) {
+        for (int j = 0; j < n; j++) {
+          int rank = 4 * ranks[i * n + j];
+          next[i * 2 * n + j] = rank;
+          next[i * 2 * n + j + n] = rank + 2;
+          next[(i + n) * 2 * n + j] = rank + 3;
+          next[(i + n) * 2 * n + j + n] = rank + 1;
+        }
+      }
+      ranks = next;
+    }
+    return ranks;
+  }
+
+  /**
+   * Returns the blue-noise map, made the first time it's needed.
+   *
+   * @return The rank of every pixel of the 64x64 map, row by row, from 0 to 4095.
+   */
+  static int[] blueNoise() {
+    return BlueNoise.RANKS;
+  }
+
+  /**
+   * Turns a map of ranks into thresholds: a gray value v at a pixel of rank r becomes white if v
+   * is greater than the threshold, which is when v / 255 > (r + 0.5) / size^2. Black stays black
+   * and white stays white, and a flat gray of v turns about v / 255 of the pixels white.
+   *
+   * @param ranks The rank of every pixel of the map.
+   * @return The threshold of every pixel of the map.
+   */
+  static int[] thresholds(int[] ranks) {
+    long count = ranks.length;
+    int[] thresholds = new int[ranks.length];
+    for (int k = 0; k < ranks.length; k++) {
+      thresholds[k] = (int) ((2L * ranks[k] + 1) * 255 / (2 * count));
+    }
+    return thresholds;
+  }
+
+  /**
+   * Turns a raster into black and white by comparing the gray value of every pixel with a
+   * threshold map, in one pass over the image.
+   *
+   * <p>
+   * The gray value is the same weighted sum as in grayscale, 0.2126 red + 0.7152 green + 0.0722
+   * blue, but it's computed exactly in integers, as ten-thousandths, and never rounded: a gray
+   * value rounds to more than a threshold t exactly when the sum is at least t + 0.5, so that is
+   * what it's compared with. Only the packed pixels are read and written, and the comparison is
+   * simple enough for the JIT to vectorize.
+   * </p>
+   *
+   * @param data       The raster, which is changed in place.
+   * @param thresholds The thresholds of a square map, row by row.
+   */
+  static void dither(IRaster data, int[] thresholds) {
+    int width = data.getWidth();
+    int size = (int) Math.round(Math.sqrt(thresholds.length));
+    int mask = size - 1;
+    int[] scaled = new int[thresholds.length];
+    for (int k = 0; k < thresholds.length; k++) {
+      scaled[k] = thresholds[k] * LUMA_SCALE + LUMA_SCALE / 2;
+    }
+
+    TileExecutor.forEachBand(width, data.getHeight(), (rowStart, rowEnd) -> {
+      int[] pixels = new int[width];
+      // the thresholds of one row of the map, repeated over the width of the image.
+      int[] row = new int[width];
+      for (int i = rowStart; i < rowEnd; i++) {
+        data.readRowRGB(i, pixels);
+        int offset = (i & mask) * size;
+        for (int j = 0; j < width; j++) {
+          row[j] = scaled[offset + (j & mask)];
+        }
+        for (int j = 0; j < width; j++) {
+          int rgb = pixels[j];
+          int luma = LUMA_RED * ((rgb >> 16) & 0xFF) + LUMA_GREEN * ((rgb >> 8) & 0xFF)
+              + LUMA_BLUE * (rgb & 0xFF);
+          pixels[j] = luma >= row[j] ? 0xFFFFFF : 0;
+        }
+        data.writeRowRGB(i, pixels);
+      }
+    });
+  }
+
+  /**
+   * This class holds the blue-noise map, so that it's only made the first time it's used.
+   */
+  private static final class BlueNoise {
+
+    /**
+     * The rank of every pixel of the map.
+     */
+    private static final int[] RANKS = voidAndCluster(BLUE_NOISE_SIZE);
+
+    /**
+     * This helper method makes a blue-noise map with the void-and-cluster method. Every pixel of a
+     * pattern has an energy: the sum of a Gaussian of its distance to every pixel that is set,
+     * with the map wrapping around at the edges. The set pixel with the most energy is the
+     * tightest cluster, and the unset pixel with the least is the largest void.
+     *
+     * <p>
+     * A random pattern is first evened out by moving the tightest cluster into the largest void
+     * until that changes nothing. Its pixels are then ranked by taking away the tightest cluster
+     * one at a time (the last ones taken get the lowest ranks), and the other pixels by filling in
+     * the largest void one at a time. Ties go to the lowest index, so the map is always the same.
+     * </p>
+     *
+     * @param size The size of the map.
+     * @return The rank of every pixel of the map, row by row.
+     */
+    private static int[] voidAndCluster(int size) {
+      int count = size * size;
+      double[] gaussian = new double[count];
+      for (int di = 0; di < size; di++) {
+        for (int dj = 0; dj < size; dj++) {
+          int y = Math.min(di, size - di);
+          int x = Math.min(dj, size - dj);
+          gaussian[di * size + dj] = Math.exp(-(x * x + y * y) / (2 * SIGMA * SIGMA));
+        }
+      }
+
+      // a random first pattern, always the same one.
+      boolean[] initial = new boolean[count];
+      double[] initialEnergy = new double[count];
+      Random random = new Random(size);
+      int ones = (int) (count * INITIAL_SHARE);
+      for (int set = 0; set < ones; ) {
+        int k = random.nextInt(count);
+        if (!initial[k]) {
+          initial[k] = true;
+          addEnergy(initialEnergy, gaussian, size, k, 1);
+          set++;
+        }
+      }
+      // the moves nearly always stop long before this, but a cycle must not hang the program.
+      for (int moves = 0; moves < count; moves++) {
+        int cluster = extreme(initial, initialEnergy, true);
+        initial[cluster] = false;
+        addEnergy(initialEnergy, gaussian, size, cluster, -1);
+        int hole = extreme(initial, initialEnergy, false);
+        initial[hole] = true;
+        addEnergy(initialEnergy, gaussian, size, hole, 1);
+        if (hole == cluster) {
+          break;
+        }
+      }
+
+      int[] ranks = new int[count];
+      boolean[] pattern = initial.clone();
+      double[] energy = initialEnergy.clone();
+      for (int rank = ones - 1; rank >= 0; rank--) {
+        int cluster = extreme(pattern, energy, true);
+        pattern[cluster] = false;
+        addEnergy(energy, gaussian, size, cluster, -1);
+        ranks[cluster] = rank;
+      }
+
+      pattern = initial;
+      energy = initialEnergy;
+      for (int rank = ones; rank < count; rank++) {
+        int hole = extreme(pattern, energy, false);
+        pattern[hole] = true;
+        addEnergy(energy, gaussian, size, hole, 1);
+        ranks[hole] = rank;
+      }
+      return ranks;
+    }
+
+    /**
+     * This helper method adds (or takes away) the energy of one set pixel to every pixel.
+     *
+     * @param energy   The energy of every pixel.
+     * @param gaussian The Gaussian of every offset, with wrap-around.
+     * @param size     The size of the map.
+     * @param pixel    The pixel that is set or unset.
+     * @param sign     1 if the pixel is set, -1 if it's unset.
+     */
+    private static void addEnergy(double[] energy, double[] gaussian, int size, int pixel,
+                                  int sign) {
+      int pi = pixel / size;
+      int pj = pixel % size;
+      for (int i = 0; i < size; i++) {
+        int di = (i - pi + size) % size;
+        for (int j = 0; j < size; j++) {
+          int dj = (j - pj + size) % size;
+          energy[i * size + j] += sign * gaussian[di * size + dj];
+        }
+      }
+    }
+
+    /**
+     * This helper method finds the tightest cluster (the set pixel with the most energy) or the
+     * largest void (the unset pixel with the least energy).
+     *
+     * @param pattern The pixels that are set.
+     * @param energy  The energy of every pixel.
+     * @param cluster True to find the tightest cluster, false for the largest void.
+     * @return The pixel, the lowest one if there is a tie.
+     */
+    private static int extreme(boolean[] pattern, double[] energy, boolean cluster) {
+      int best = -1;
+      for (int k = 0; k < pattern.length; k++) {
+        if (pattern[k] == cluster && (best < 0
+                || (cluster ? energy[k] > energy[best] : energy[k] < energy[best]))) {
+          best = k;
+        }
+      }
+      return best;
+    }
+  }
+}
@@ -0,0 +1,220 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class runs work on an image in parallel. The image is split into bands of whole rows, and
+ * the bands are handed to a fork/join pool. Small images are worked on by the calling thread,
+ * because splitting them costs more than it saves.
+ *
+ * <p>
+ * The number of threads can be set with the system property "imagine.parallelism" or with
+ * {@link #setParallelism(int)}; it defaults to the number of available processors.
+ * </p>
+ */
+final class TileExecutor {
+
+  /**
+   * The default size (in pixels) below which an image is worked on by the calling thread.
+   */
+  static final long DEFAULT_THRESHOLD = 1 << 16;
+
+  /**
+   * The number of bands each thread gets, so that threads that finish early can steal work.
+   */
+  private static final int BANDS_PER_THREAD = 4;
+
+  /**
+   * The pool that runs the bands.
+   */
+  private static ForkJoinPool pool;
+
+  /**
+   * The number of threads in the pool.
+   */
+  private static int parallelism;
+
+  /**
+   * The size (in pixels) below which an image is worked on by the calling thread.
+   */
+  private static long threshold = DEFAULT_THRESHOLD;
+
+  static {
+    setParallelism(Integer.getInteger("imagine.parallelism",
+            Runtime.getRuntime().availableProcessors()));
+  }
+
+  /**
+   * This class only has static methods, so it can't be constructed.
+   */
+  private TileExecutor() {
+  }
+
+  /**
+   * This interface represents work that is done on one band of rows.
+   */
+  interface BandTask {
+
+    /**
+     * Does the work for the rows in [rowStart, rowEnd).
+     *
+     * @param rowStart The first row of the band.
+     * @param rowEnd   The row after the last row of the band.
+     */
+    void run(int rowStart, int rowEnd);
+  }
+
+  /**
+   * Sets the number of threads that work on an image. A parallelism of 1 runs everything on the
+   * calling thread.
+   *
+   * @param threads The number of threads.
+   * @throws IllegalArgumentException if the number of threads is less than 1.
+   */
+  static synchronized void setParallelism(int threads) throws IllegalArgumentException {
+    if (threads < 1) {
+      throw new IllegalArgumentException("Parallelism must be at least 1");
+    }
+    if (pool != null) {
+      pool.shutdown();
+    }
+    parallelism = threads;
+    pool = threads > 1 ? new ForkJoinPool(threads) : null;
+  }
+
+  /**
+   * Getter for the number of threads that work on an image.
+   *
+   * @return The parallelism.
+   */
+  static synchronized int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Sets the size (in pixels) below which an image is worked on by the calling thread.
+   *
+   * @param pixels The threshold.
+   */
+  static synchronized void setThreshold(long pixels) {
+    threshold = pixels;
+  }
+
+  /**
+   * Runs a task over all the rows of an image. The bands never overlap, and every row is in exactly
+   * one band.
+   *
+   * @param width  The width of the image.
+   * @param height The height of the image.
+   * @param task   The work to do on each band.
+   */
+  static void forEachBand(int width, int height, BandTask task) {
+    ForkJoinPool current;
+    int threads;
+    synchronized (TileExecutor.class) {
+      current = pool;
+      threads = parallelism;
+      if ((long) width * height < threshold) {
+        current = null;
+      }
+    }
+
+    if (current == null || height < 2) {
+      task.run(0, height);
+      return;
+    }
+    int minRows = Math.max(1, height / (threads * BANDS_PER_THREAD));
+    current.invoke(new BandAction(task, 0, height, minRows));
+  }
+
+  /**
+   * Runs the same work on every thread at once, for work that hands out its own rows, such as a
+   * wavefront where a row can only go as far as the row above it. The work must not depend on
+   * how many threads run it, because a thread that starts late may find nothing left to do, and
+   * small images are worked on by the calling thread alone.
+   *
+   * @param pixels The number of pixels of the image.
+   * @param worker The work each thread does; it returns when there is nothing left to do.
+   */
+  static void forEachWorker(long pixels, Runnable worker) {
+    ForkJoinPool current;
+    int threads;
+    synchronized (TileExecutor.class) {
+      current = pixels < threshold ? null : pool;
+      threads = parallelism;
+    }
+
+    if (current == null) {
+      worker.run();
+      return;
+    }
+    List<ForkJoinTask<?>> tasks = new ArrayList<>();
+    for (int t = 0; t < threads; t++) {
+      tasks.add(ForkJoinTask.adapt(worker));
+    }
+    current.invoke(ForkJoinTask.adapt(() -> {
+      ForkJoinTask.invokeAll(tasks);
+    }));
+  }
+
+  /**
+   * This class splits a band in half until it's small enough, then runs the task on it.
+   */
+  private static class BandAction extends RecursiveAction {
+
+    /**
+     * The version of this class, since RecursiveAction is serializable.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * The work to do.
+     */
+    private final BandTask task;
+
+    /**
+     * The first row of the band.
+     */
+    private final int rowStart;
+
+    /**
+     * The row after the last row of the band.
+     */
+    private final int rowEnd;
+
+    /**
+     * The number of rows below which a band isn't split further.
+     */
+    private final int minRows;
+
+    /**
+     * Constructs the action for one band.
+     *
+     * @param task     The work to do.
+     * @param rowStart The first row of the band.
+     * @param rowEnd   The row after the last row of the band.
+     * @param minRows  The number of rows below which a band isn't split further.
+     */
+    BandAction(BandTask task, int rowStart, int rowEnd, int minRows) {
+      this.task = task;
+      this.rowStart = rowStart;
+      this.rowEnd = rowEnd;
+      this.minRows = minRows;
+    }
+
+    @Override
+    protected void compute() {
+      if (rowEnd - rowStart <= minRows) {
+        task.run(rowStart, rowEnd);
+        return;
+      }
+      int middle = (rowStart + rowEnd) >>> 1;
+      invokeAll(new BandAction(task, rowStart, middle, minRows),
+              new BandAction(task, middle, rowEnd, minRows));
+    }
+  }
+}
@@ -19,6 +19,7 @@ import javax.swing.JTextArea;
 import javax.swing.JButton;
 import javax.swing.JLabel;
 import javax.swing.JScrollPane;
+import javax.swing.JSlider;
 import javax.swing.ImageIcon;
 import javax.swing.JTextField;
 import javax.swing.ScrollPaneConstants;
@@ -32,7 +33,10 @@ import controller.Features;
  */
 public class View extends JFrame implements IView {
 
-
+  /**
+   * The most seeds the mosaic slider goes up to.
+   */
+  private static final int MAX_SLIDER_SEEDS = 5000;
 
   /**
    * This is a menu item that opens a save window to save an image.
@@ -70,10 +74,34 @@ public class View extends JFrame implements IView {
    * A menu item that turns the image into a mosaic.
    */
   private JMenuItem mosaic;
+  /**
+   * A menu item that turns the image into a mosaic with a slider for the number of seeds.
+   */
+  private JMenuItem mosaicSlider;
   /**
    * A menu item that sharpens the image.
    */
   private JMenuItem sharpen;
+  /**
+   * A menu item that makes the image brighter or darker.
+   */
+  private JMenuItem brightness;
+  /**
+   * A menu item that changes the contrast of the image.
+   */
+  private JMenuItem contrast;
+  /**
+   * A menu item that applies a gamma curve to the image.
+   */
+  private JMenuItem gamma;
+  /**
+   * A menu item that stretches the colors of the image between a black and a white point.
+   */
+  private JMenuItem levels;
+  /**
+   * A menu item that maps the colors of the image through a curve.
+   */
+  private JMenuItem curves;
   /**
    * A menu item that generates a checkerboard pattern.
    */
@@ -178,6 +206,9 @@ public class View extends JFrame implements IView {
     sharpen.addActionListener(l -> {
       f.sharpen();
     });
+    mosaicSlider.addActionListener(l -> {
+      showMosaicSlider(f);
+    });
     mosaic.addActionListener(l -> {
       String inputDialog = getInput("Please give the number of seeds. "
               + "The seed amount must be a whole number greater than 0.");
@@ -185,6 +216,41 @@ public class View extends JFrame implements IView {
         f.mosaic(inputDialog);
       }
     });
+    brightness.addActionListener(l -> {
+      String inputDialog = getInput("Please give the amount to add to every color. "
+              + "The amount must be a whole number from -255 to 255.");
+      if (inputDialog != null) {
+        f.brightness(inputDialog);
+      }
+    });
+    contrast.addActionListener(l -> {
+      String inputDialog = getInput("Please give the contrast factor. "
+              + "1 changes nothing, less than 1 lowers the contrast and more than 1 raises it.");
+      if (inputDialog != null) {
+        f.contrast(inputDialog);
+      }
+    });
+    gamma.addActionListener(l -> {
+      String inputDialog = getInput("Please give the gamma. "
+              + "More than 1 brightens the mid tones, less than 1 darkens them.");
+      if (inputDialog != null) {
+        f.gamma(inputDialog);
+      }
+    });
+    levels.addActionListener(l -> {
+      String inputDialog = getInput("Please give the black point and the white point (0 to 255), "
+              + "optionally followed by a gamma. For example: 16 235 1.2");
+      if (inputDialog != null) {
+        f.levels(inputDialog);
+      }
+    });
+    curves.addActionListener(l -> {
+      String inputDialog = getInput("Please give the input and output (0 to 255) of every point "
+              + "of the curve. For example: 0 0 64 48 192 208 255 255");
+      if (inputDialog != null) {
+        f.curves(inputDialog);
+      }
+    });
     save.addActionListener(l -> {
       final JFileChooser fchooser = new JFileChooser(".");
       fchooser.setFont(this.font);
@@ -303,10 +369,11 @@ public class View extends JFrame implements IView {
 
   @Override
   public void changeMenuStatus(boolean isLoaded, boolean canRedo, boolean canUndo) {
-    changeMenuState(false, load, save, blur, sepia, mosaic,
-            greyscale, dither, sharpen, redo, undo);
+    changeMenuState(false, load, save, blur, sepia, mosaic, mosaicSlider,
+            greyscale, dither, sharpen, brightness, contrast, gamma, levels, curves, redo, undo);
     if (isLoaded) {
-      changeMenuState(true, load, save, blur, sepia, mosaic, greyscale, dither, sharpen);
+      changeMenuState(true, load, save, blur, sepia, mosaic, mosaicSlider, greyscale, dither,
+              sharpen, brightness, contrast, gamma, levels, curves);
     }
     if (canRedo) {
       changeMenuState(true, redo);
@@ -316,6 +383,33 @@ public class View extends JFrame implements IView {
     }
   }
 
+  /**
+   * This helper method shows a slider for the number of seeds of a mosaic. The image is redrawn
+   * whenever the slider settles on a value (not while it's being dragged, since a mosaic of a big
+   * image takes a while), and every new mosaic replaces the one before it.
+   *
+   * @param f The features that make the mosaic.
+   */
+  private void showMosaicSlider(Features f) {
+    JSlider slider = new JSlider(1, MAX_SLIDER_SEEDS, 500);
+    slider.setMajorTickSpacing(MAX_SLIDER_SEEDS / 4);
+    slider.setPaintTicks(true);
+    slider.setPaintLabels(true);
+    slider.setFont(this.font);
+    boolean[] shown = {false};
+    slider.addChangeListener(e -> {
+      if (slider.getValueIsAdjusting()) {
+        return;
+      }
+      f.previewMosaic(slider.getValue(), shown[0]);
+      shown[0] = true;
+    });
+    f.previewMosaic(slider.getValue(), false);
+    shown[0] = true;
+    JOptionPane.showMessageDialog(null, slider, "Drag to change the number of seeds.",
+            JOptionPane.PLAIN_MESSAGE);
+  }
+
   /**
    * This helper method prompts the user for some input by displaying a pop up box.
    *
@@ -360,6 +454,7 @@ public class View extends JFrame implements IView {
     JMenu file;
     JMenu edit;
     JMenu apply;
+    JMenu tone;
     JMenu generate;
     JMenu rainbow;
     JMenu flags;
@@ -375,6 +470,8 @@ public class View extends JFrame implements IView {
 
     apply = new JMenu("Apply Filter");
     apply.setFont(this.font);
+    tone = new JMenu("Adjust Tone");
+    tone.setFont(this.font);
     generate = new JMenu("Generate Pattern");
     generate.setFont(this.font);
 
@@ -401,10 +498,18 @@ public class View extends JFrame implements IView {
     blur = new JMenuItem("Blur");
     greyscale = new JMenuItem("Grayscale");
     mosaic = new JMenuItem("Mosaic");
+    mosaicSlider = new JMenuItem("Mosaic Slider");
     sepia = new JMenuItem("Sepia");
     dither = new JMenuItem("Dither");
     sharpen = new JMenuItem("Sharpen");
 
+    // tone menu items (the options that appear in a drop-down when you click "Adjust Tone")
+    brightness = new JMenuItem("Brightness");
+    contrast = new JMenuItem("Contrast");
+    gamma = new JMenuItem("Gamma");
+    levels = new JMenuItem("Levels");
+    curves = new JMenuItem("Curves");
+
     // generate menu items (the options that appear in a drop-down when you click
     // "Generate Pattern")
     checkerboard = new JMenuItem("Checkerboard");
@@ -417,12 +522,13 @@ public class View extends JFrame implements IView {
     makeBatch = new JMenuItem("New Batch Script");
     makeBatch.setFont(this.font);
 
-    JMenuItem[] items = {save, undo, redo, blur, greyscale, mosaic, sepia, dither, sharpen, load,
+    JMenuItem[] items = {save, undo, redo, blur, greyscale, mosaic, mosaicSlider, sepia, dither,
+                         sharpen, brightness, contrast, gamma, levels, curves, load,
                          checkerboard, france, greece, switzerland, horizontal, vertical};
 
     for (int i = 0; i < items.length; i++) {
       items[i].setFont(this.font);
-      if (i < 9) {
+      if (i < 15) {
         items[i].setEnabled(false);
       }
     }
@@ -430,6 +536,7 @@ public class View extends JFrame implements IView {
     menuBar.add(file);
     menuBar.add(edit);
     menuBar.add(apply);
+    menuBar.add(tone);
     menuBar.add(generate);
     menuBar.add(batch);
 
@@ -444,8 +551,15 @@ public class View extends JFrame implements IView {
     apply.add(greyscale);
     apply.add(dither);
     apply.add(mosaic);
+    apply.add(mosaicSlider);
     apply.add(sharpen);
 
+    tone.add(brightness);
+    tone.add(contrast);
+    tone.add(gamma);
+    tone.add(levels);
+    tone.add(curves);
+
     generate.add(checkerboard);
     generate.add(rainbow);
     generate.add(flags);
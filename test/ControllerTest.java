@@ -63,6 +63,19 @@ public class ControllerTest {
     }
   }
 
+  @Test
+  public void testKernelTooLarge() {
+    String str = "generate france 30\napply kernel 65536 65536 1";
+    InputStream stream = new ByteArrayInputStream(str.getBytes(StandardCharsets.UTF_8));
+    try {
+      Controller c = new Controller(stream, new ModelImpl());
+      c.controllerGo();
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertEquals("Kernel size is too large", e.getMessage());
+    }
+  }
+
   /**
    @Test public void testMainLoadFileThatDoesNotExist() {
    String[] args = {"load ilikecandy.jpg"};
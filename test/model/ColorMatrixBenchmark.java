@@ -0,0 +1,102 @@
+package model;
+
+import java.util.Random;
+
+/**
+ * A benchmark for the ways a color matrix can be applied, on a 4K image. It isn't a test: run it
+ * with its main method, with and without the SIMD backend (see {@link ColorMatrix}).
+ */
+public class ColorMatrixBenchmark {
+
+  /**
+   * The width of the image.
+   */
+  private static final int WIDTH = 3840;
+
+  /**
+   * The height of the image.
+   */
+  private static final int HEIGHT = 2160;
+
+  /**
+   * The number of times every way is timed.
+   */
+  private static final int ROUNDS = 10;
+
+  /**
+   * A way of applying a matrix to one row.
+   */
+  private interface RowOp {
+
+    /**
+     * Applies a matrix to one row, in place.
+     *
+     * @param matrix The matrix.
+     * @param red    The red values of the row.
+     * @param green  The green values of the row.
+     * @param blue   The blue values of the row.
+     * @param length The number of pixels in the row.
+     */
+    void apply(ColorMatrix matrix, int[] red, int[] green, int[] blue, int length);
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args Not used.
+   */
+  public static void main(String[] args) {
+    ColorMatrix sepia = new ColorMatrix(new double[][]{
+        {0.393, 0.769, 0.189}, {0.349, 0.686, 0.168}, {0.272, 0.534, 0.131}});
+    int[][][] image = new int[3][HEIGHT][WIDTH];
+    Random random = new Random(42);
+    for (int h = 0; h < 3; h++) {
+      for (int i = 0; i < HEIGHT; i++) {
+        for (int j = 0; j < WIDTH; j++) {
+          image[h][i][j] = random.nextInt(256);
+        }
+      }
+    }
+
+    System.out.println("sepia on " + WIDTH + "x" + HEIGHT + ", best of " + ROUNDS
+            + " (vectorized doubles: " + ColorMatrix.isVectorized() + ")");
+    long doubles = run("doubles", sepia, image, ColorMatrix::apply);
+    long fixed = run("fixed point", sepia, image, ColorMatrix::applyFixedPoint);
+    long tables = run("tables", sepia, image, ColorMatrix::applyTables);
+    System.out.printf("tables are %.2fx as fast as doubles and %.2fx as fast as fixed point%n",
+            (double) doubles / tables, (double) fixed / tables);
+  }
+
+  /**
+   * Applies a matrix to a copy of every row of the image, several times, and prints the fastest
+   * time.
+   *
+   * @param name   The name of the way the matrix is applied.
+   * @param matrix The matrix.
+   * @param image  The red, green and blue rows of the image.
+   * @param op     The way the matrix is applied.
+   * @return The fastest time, in nanoseconds.
+   */
+  private static long run(String name, ColorMatrix matrix, int[][][] image, RowOp op) {
+    int[] red = new int[WIDTH];
+    int[] green = new int[WIDTH];
+    int[] blue = new int[WIDTH];
+    long best = Long.MAX_VALUE;
+    long checksum = 0;
+    for (int round = 0; round < ROUNDS; round++) {
+      long start = System.nanoTime();
+      for (int i = 0; i < HEIGHT; i++) {
+        System.arraycopy(image[0][i], 0, red, 0, WIDTH);
+        System.arraycopy(image[1][i], 0, green, 0, WIDTH);
+        System.arraycopy(image[2][i], 0, blue, 0, WIDTH);
+        op.apply(matrix, red, green, blue, WIDTH);
+        for (int j = 0; j < WIDTH; j++) {
+          checksum += red[j] + green[j] + blue[j];
+        }
+      }
+      best = Math.min(best, System.nanoTime() - start);
+    }
+    System.out.printf("%-12s %7.1f ms  (checksum %d)%n", name, best / 1e6, checksum / ROUNDS);
+    return best;
+  }
+}
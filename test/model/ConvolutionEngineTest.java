@@ -0,0 +1,217 @@
+package model;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * A test class for the convolution engine.
+ */
+public class ConvolutionEngineTest {
+
+  private IRaster makeRaster(int width, int height, long seed) {
+    Random rand = new Random(seed);
+    IRaster raster = new PackedRaster(width, height);
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        raster.setRGB(i, j, rand.nextInt(0x1000000));
+      }
+    }
+    return raster;
+  }
+
+  private Kernel makeKernel(int rows, int cols, long seed) {
+    Random rand = new Random(seed);
+    double[] values = new double[rows * cols];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = rand.nextDouble() / values.length * 2 - 0.5 / values.length;
+    }
+    return new Kernel(rows, cols, values);
+  }
+
+  /**
+   * The straightforward convolution: every tap looks up its pixel through the border mode.
+   */
+  private int reference(IRaster src, Kernel kernel, BorderMode border, int i, int j, int h) {
+    double sum = 0;
+    for (int k = 0; k < kernel.getRows(); k++) {
+      for (int l = 0; l < kernel.getCols(); l++) {
+        int row = border.map(i + k - kernel.getAnchorRow(), src.getHeight());
+        int col = border.map(j + l - kernel.getAnchorCol(), src.getWidth());
+        if (row >= 0 && col >= 0) {
+          sum += src.get(row, col, h) * kernel.get(k, l);
+        }
+      }
+    }
+    return IRaster.clamp((int) Math.round(sum));
+  }
+
+  private void testAgainstReference(int rows, int cols, BorderMode border) {
+    IRaster src = makeRaster(23, 17, rows * 31 + cols);
+    IRaster dst = new PackedRaster(23, 17);
+    Kernel kernel = makeKernel(rows, cols, rows + cols * 7);
+    ConvolutionEngine.convolve(src, dst, kernel, border);
+
+    for (int i = 0; i < 17; i++) {
+      for (int j = 0; j < 23; j++) {
+        for (int h = 0; h < 3; h++) {
+          assertEquals(border + " at " + i + ", " + j, reference(src, kernel, border, i, j, h),
+                  dst.get(i, j, h));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testZeroBorder() {
+    testAgainstReference(3, 3, BorderMode.ZERO);
+    testAgainstReference(5, 3, BorderMode.ZERO);
+  }
+
+  @Test
+  public void testClampBorder() {
+    testAgainstReference(3, 5, BorderMode.CLAMP);
+    testAgainstReference(4, 2, BorderMode.CLAMP);
+  }
+
+  @Test
+  public void testReflectBorder() {
+    testAgainstReference(5, 5, BorderMode.REFLECT);
+    testAgainstReference(7, 1, BorderMode.REFLECT);
+  }
+
+  @Test
+  public void testWrapBorder() {
+    testAgainstReference(3, 7, BorderMode.WRAP);
+    testAgainstReference(2, 2, BorderMode.WRAP);
+  }
+
+  private Kernel makeSeparableKernel(int rows, int cols, long seed) {
+    Random rand = new Random(seed);
+    double[] column = new double[rows];
+    double[] row = new double[cols];
+    for (int i = 0; i < rows; i++) {
+      column[i] = rand.nextDouble() / rows;
+    }
+    for (int j = 0; j < cols; j++) {
+      row[j] = rand.nextDouble() * 2 / cols - 0.5 / cols;
+    }
+    double[] values = new double[rows * cols];
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < cols; j++) {
+        values[i * cols + j] = column[i] * row[j];
+      }
+    }
+    return new Kernel(rows, cols, values);
+  }
+
+  @Test
+  public void testSeparableKernel() {
+    IRaster src = makeRaster(29, 19, 3);
+    IRaster dst = new PackedRaster(29, 19);
+    for (BorderMode border : BorderMode.values()) {
+      Kernel kernel = makeSeparableKernel(5, 4, border.ordinal());
+      ConvolutionEngine.convolve(src, dst, kernel, border);
+      for (int i = 0; i < 19; i++) {
+        for (int j = 0; j < 29; j++) {
+          for (int h = 0; h < 3; h++) {
+            // both passes round differently, so allow an off-by-one right on a .5 boundary
+            assertEquals(border + " at " + i + ", " + j, reference(src, kernel, border, i, j, h),
+                    dst.get(i, j, h), 1);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testSeparate() {
+    double[][] factors = new Kernel(new double[][]{{1, 2, 1}, {2, 4, 2}, {1, 2, 1}}).separate();
+    assertArrayEquals(new double[]{2, 4, 2}, factors[0], 1e-12);
+    assertArrayEquals(new double[]{0.5, 1, 0.5}, factors[1], 1e-12);
+
+    assertNull(new Kernel(new double[][]{{0, -1, 0}, {-1, 5, -1}, {0, -1, 0}}).separate());
+    assertNull(new Kernel(new double[][]{{0, 0}, {0, 0}}).separate());
+  }
+
+  @Test
+  public void testFftMatchesDirect() {
+    IRaster src = makeRaster(41, 37, 9);
+    IRaster dst = new PackedRaster(41, 37);
+    for (BorderMode border : BorderMode.values()) {
+      // an even size, so the anchor isn't in the middle, and tiles that don't fit the image evenly.
+      Kernel kernel = makeKernel(9, 6, border.ordinal() + 20);
+      FftConvolution.convolve(src, dst, kernel, border, 16);
+      for (int i = 0; i < 37; i++) {
+        for (int j = 0; j < 41; j++) {
+          for (int h = 0; h < 3; h++) {
+            assertEquals(border + " at " + i + ", " + j, reference(src, kernel, border, i, j, h),
+                    dst.get(i, j, h), 1);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testFftChosenOnlyForLargeKernels() {
+    assertEquals(0, FftConvolution.chooseSize(makeKernel(5, 5, 1), 2000, 2000));
+    assertTrue(FftConvolution.chooseSize(makeKernel(25, 25, 1), 2000, 2000) > 25);
+  }
+
+  @Test
+  public void testFft() {
+    Fft fft = new Fft(8);
+    double[] re = {1, 2, 3, 4, 0, -1, 5, 2};
+    double[] im = new double[8];
+    fft.transform(re, im, 0, false);
+    // the first point of the transform is the sum.
+    assertEquals(16, re[0], 1e-9);
+    assertEquals(0, im[0], 1e-9);
+    fft.transform(re, im, 0, true);
+    assertArrayEquals(new double[]{8, 16, 24, 32, 0, -8, 40, 16}, re, 1e-9);
+  }
+
+  @Test
+  public void testKernelBiggerThanImage() {
+    IRaster src = makeRaster(3, 2, 5);
+    IRaster dst = new PackedRaster(3, 2);
+    Kernel kernel = makeKernel(7, 9, 11);
+    for (BorderMode border : BorderMode.values()) {
+      ConvolutionEngine.convolve(src, dst, kernel, border);
+      for (int i = 0; i < 2; i++) {
+        for (int j = 0; j < 3; j++) {
+          assertEquals(reference(src, kernel, border, i, j, 1), dst.get(i, j, 1));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testBorderModeMap() {
+    assertEquals(-1, BorderMode.ZERO.map(-1, 5));
+    assertEquals(0, BorderMode.CLAMP.map(-3, 5));
+    assertEquals(4, BorderMode.CLAMP.map(7, 5));
+    assertEquals(1, BorderMode.REFLECT.map(-1, 5));
+    assertEquals(3, BorderMode.REFLECT.map(5, 5));
+    assertEquals(4, BorderMode.WRAP.map(-1, 5));
+    assertEquals(0, BorderMode.WRAP.map(5, 5));
+  }
+
+  @Test
+  public void testSameRasterIsRejected() {
+    IRaster src = makeRaster(3, 3, 1);
+    try {
+      ConvolutionEngine.convolve(src, src, makeKernel(3, 3, 1), BorderMode.ZERO);
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertEquals("Source and destination must be different rasters", e.getMessage());
+    }
+  }
+}
@@ -4,8 +4,10 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.NoSuchElementException;
+import java.util.Random;
 
 import static junit.framework.TestCase.fail;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -21,7 +23,7 @@ public class ImageBufferTest {
   @Before
   public void setUp() {
     imgGen = new ImageGenerator(0, 0);
-    int[][][] imgArr1 = new int[0][0][0];
+    int[] imgArr1 = new int[0];
     img = new Image(imgArr1, 0, 0);
     img2 = new Image(imgArr1, 1, 1);
     img3 = new Image(imgArr1, 2, 2);
@@ -111,4 +113,64 @@ public class ImageBufferTest {
     imb.undo();
     assertEquals(img, imb.getImage());
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testUndoRedoGiveBackTheExactPixelsAcrossKeyframes() {
+    ImageBuffer imb = new ImageBuffer();
+    Random random = new Random(7);
+    int[] pixels = new int[37 * 41];
+    for (int k = 0; k < pixels.length; k++) {
+      pixels[k] = random.nextInt(0x1000000);
+    }
+    int steps = 3 * ImageBuffer.KEYFRAME_INTERVAL;
+    int[][] history = new int[steps][];
+    for (int s = 0; s < steps; s++) {
+      // change a few pixels, or nothing at all every fifth step.
+      for (int k = 0; s % 5 != 0 && k < 30; k++) {
+        pixels[random.nextInt(pixels.length)] = random.nextInt(0x1000000);
+      }
+      history[s] = pixels.clone();
+      imb.add(new Image(pixels.clone(), 37, 41));
+    }
+
+    int s = steps - 1;
+    while (imb.canUndo()) {
+      imb.undo();
+      s--;
+      assertArrayEquals(history[s], pixelsOf(imb.getImage()));
+    }
+    assertEquals(steps - 10, s);
+    while (imb.canRedo()) {
+      imb.redo();
+      s++;
+      assertArrayEquals(history[s], pixelsOf(imb.getImage()));
+    }
+    assertEquals(steps - 1, s);
+  }
+
+  @Test
+  public void testChangingTheImageGivenBackLeavesTheHistoryAlone() {
+    ImageBuffer imb = new ImageBuffer();
+    int[] pixels = {1, 2, 3, 4, 5, 6};
+    imb.add(new Image(pixels.clone(), 3, 2));
+    imb.getImage().getData().setRGB(0, 0, 0xFFFFFF);
+    assertArrayEquals(pixels, pixelsOf(imb.getImage()));
+  }
+
+  /**
+   * Reads every pixel of an image, row by row.
+   *
+   * @param image The image.
+   * @return The pixels.
+   */
+  private static int[] pixelsOf(Image image) {
+    IRaster data = image.getData();
+    int[] pixels = new int[data.getWidth() * data.getHeight()];
+    for (int i = 0; i < data.getHeight(); i++) {
+      for (int j = 0; j < data.getWidth(); j++) {
+        pixels[i * data.getWidth() + j] = data.getRGB(i, j);
+      }
+    }
+    return pixels;
+  }
+}
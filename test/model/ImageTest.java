@@ -0,0 +1,505 @@
+package model;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A test class for the operations on an image.
+ */
+public class ImageTest {
+
+  /**
+   * Creates a test image with a pattern that has lots of different colors.
+   */
+  private Image makeImage(int width, int height) {
+    int[] data = new int[width * height];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (int) ((i * 2654435761L) & 0xFFFFFF);
+    }
+    return new Image(data, width, height);
+  }
+
+  private void assertSamePixels(Image expected, Image actual) {
+    assertEquals(expected.getWidth(), actual.getWidth());
+    assertEquals(expected.getHeight(), actual.getHeight());
+    for (int i = 0; i < expected.getHeight(); i++) {
+      for (int j = 0; j < expected.getWidth(); j++) {
+        assertEquals("pixel " + i + ", " + j, expected.getData().getRGB(i, j),
+                actual.getData().getRGB(i, j));
+      }
+    }
+  }
+
+  /**
+   * Runs an operation once on the calling thread and once split over several threads.
+   */
+  private void testParallelMatchesSerial(Consumer<Image> operation) {
+    Image serial = makeImage(97, 61);
+    Image parallel = makeImage(97, 61);
+    try {
+      TileExecutor.setParallelism(1);
+      operation.accept(serial);
+      TileExecutor.setParallelism(4);
+      TileExecutor.setThreshold(0);
+      operation.accept(parallel);
+    } finally {
+      TileExecutor.setParallelism(Runtime.getRuntime().availableProcessors());
+      TileExecutor.setThreshold(TileExecutor.DEFAULT_THRESHOLD);
+    }
+    assertSamePixels(serial, parallel);
+  }
+
+  @Test
+  public void testParallelBlur() {
+    testParallelMatchesSerial(Image::blur);
+  }
+
+  @Test
+  public void testParallelBlurWithRadius() {
+    testParallelMatchesSerial(img -> img.blur(9));
+  }
+
+  @Test
+  public void testParallelColorDither() {
+    testParallelMatchesSerial(img -> img.dither(true, false));
+    testParallelMatchesSerial(img -> img.dither(true, true));
+    testParallelMatchesSerial(Image::dither);
+  }
+
+  @Test
+  public void testParallelThresholdDither() {
+    testParallelMatchesSerial(img -> img.ditherOrdered(8));
+    testParallelMatchesSerial(Image::ditherBlueNoise);
+  }
+
+  @Test
+  public void testThresholdMaps() {
+    assertArrayEquals(new int[]{0, 2, 3, 1}, ThresholdDither.bayer(2));
+    for (int[] ranks : List.of(ThresholdDither.bayer(16), ThresholdDither.blueNoise())) {
+      int[] sorted = ranks.clone();
+      Arrays.sort(sorted);
+      for (int k = 0; k < sorted.length; k++) {
+        assertEquals(k, sorted[k]);
+      }
+    }
+  }
+
+  @Test
+  public void testThresholdDitherKeepsBrightness() {
+    for (int gray : new int[]{0, 1, 64, 128, 200, 254, 255}) {
+      int[] data = new int[128 * 64];
+      Arrays.fill(data, gray * 0x010101);
+      Image ordered = new Image(data.clone(), 128, 64);
+      Image blueNoise = new Image(data, 128, 64);
+      ordered.ditherOrdered(8);
+      blueNoise.ditherBlueNoise();
+      for (Image img : List.of(ordered, blueNoise)) {
+        int white = 0;
+        for (int i = 0; i < 64; i++) {
+          for (int j = 0; j < 128; j++) {
+            int rgb = img.getData().getRGB(i, j);
+            assertTrue(rgb == 0 || rgb == 0xFFFFFF);
+            white += rgb & 1;
+          }
+        }
+        assertEquals(gray / 255.0, white / (128.0 * 64), 1.0 / 64);
+      }
+    }
+  }
+
+  @Test
+  public void testQuantizeKeepsAnImageWithFewColors() {
+    Image expected = new ImageGenerator(0, 0, StorageMode.PACKED).drawFrance(40);
+    Image actual = new ImageGenerator(0, 0, StorageMode.PACKED).drawFrance(40);
+    actual.quantize(3, false);
+    assertSamePixels(expected, actual);
+    actual.quantize(3, true);
+    assertSamePixels(expected, actual);
+  }
+
+  @Test
+  public void testQuantizeUsesAtMostTheColorsAskedFor() {
+    for (boolean dither : new boolean[]{false, true}) {
+      Image img = makeImage(90, 70);
+      img.quantize(16, dither);
+      Set<Integer> colors = new HashSet<>();
+      for (int i = 0; i < 70; i++) {
+        for (int j = 0; j < 90; j++) {
+          colors.add(img.getData().getRGB(i, j));
+        }
+      }
+      assertTrue(colors.size() <= 16);
+      assertTrue(colors.size() > 8);
+    }
+    testParallelMatchesSerial(img -> img.quantize(40, true));
+  }
+
+  @Test
+  public void testDitherMatchesRowByRowDither() {
+    Image expected = makeImage(83, 47);
+    Image actual = makeImage(83, 47);
+    actual.dither();
+
+    // the plain Floyd-Steinberg dither, one pixel after the other.
+    expected.toGrayScale();
+    IRaster data = expected.getData();
+    int width = expected.getWidth();
+    int height = expected.getHeight();
+    int[][] error = new int[height + 1][width + 1];
+    for (int i = 0; i < height; i++) {
+      for (int j = 0; j < width; j++) {
+        int oldColor = data.get(i, j, 0) + error[i][j];
+        int newColor = oldColor < 127 ? 0 : 255;
+        int diff = oldColor - newColor;
+        data.setRGB(i, j, newColor * 0x010101);
+        error[i][j + 1] += (int) Math.round(7.0 / 16.0 * diff);
+        if (i + 1 < height) {
+          if (j > 0) {
+            error[i + 1][j - 1] += (int) Math.round(3.0 / 16.0 * diff);
+          }
+          error[i + 1][j] += (int) Math.round(5.0 / 16.0 * diff);
+          error[i + 1][j + 1] += (int) Math.round(1.0 / 16.0 * diff);
+        }
+      }
+    }
+    assertSamePixels(expected, actual);
+  }
+
+  @Test
+  public void testBlurRadiusOneIsBlur() {
+    Image expected = makeImage(31, 17);
+    Image actual = makeImage(31, 17);
+    expected.blur();
+    actual.blur(1);
+    assertSamePixels(expected, actual);
+  }
+
+  @Test
+  public void testLargeBlurOfFlatImageStaysFlat() {
+    int[] data = new int[20 * 10];
+    Arrays.fill(data, 0x30A0F0);
+    Image img = new Image(data, 20, 10);
+    img.blur(40);
+    for (int i = 0; i < 10; i++) {
+      for (int j = 0; j < 20; j++) {
+        assertEquals(0x30A0F0, img.getData().getRGB(i, j));
+      }
+    }
+  }
+
+  @Test
+  public void testHugeBlurOfWhiteImageDoesNotOverflow() {
+    int[] data = new int[2 * 2];
+    Arrays.fill(data, 0xFFFFFF);
+    Image img = new Image(data, 2, 2);
+    // the running sums of a box this wide are past the int range.
+    img.blur(20_000_000);
+    for (int i = 0; i < 2; i++) {
+      for (int j = 0; j < 2; j++) {
+        assertEquals(0xFFFFFF, img.getData().getRGB(i, j));
+      }
+    }
+  }
+
+  @Test
+  public void testBoxRadiiMatchGaussianVariance() {
+    for (int sigma = 1; sigma < 40; sigma++) {
+      double variance = 0;
+      for (int radius : BoxBlur.radii(sigma)) {
+        variance += radius * (radius + 1) / 3.0;
+      }
+      // the widths are odd, so the variance can only be matched up to one step.
+      assertEquals(sigma * sigma, variance, 2.0 * sigma + 1);
+    }
+  }
+
+  @Test
+  public void testParallelSharpen() {
+    testParallelMatchesSerial(Image::sharpen);
+  }
+
+  @Test
+  public void testParallelSepia() {
+    testParallelMatchesSerial(Image::toSepia);
+  }
+
+  @Test
+  public void testParallelGrayscale() {
+    testParallelMatchesSerial(Image::toGrayScale);
+  }
+
+  /**
+   * Applies a matrix to every possible color with the backend in use and with the scalar backend.
+   */
+  private void testBackendMatchesScalar(double[][] matrix) {
+    ColorMatrix effect = new ColorMatrix(matrix);
+    double[] values = new double[9];
+    for (int i = 0; i < 3; i++) {
+      System.arraycopy(matrix[i], 0, values, i * 3, 3);
+    }
+    // one row per red and green, with every blue, plus a few left over for the scalar tail.
+    int length = 259;
+    int[][] actual = new int[3][length];
+    int[][] expected = new int[3][length];
+    for (int r = 0; r < 256; r++) {
+      for (int g = 0; g < 256; g++) {
+        for (int j = 0; j < length; j++) {
+          actual[0][j] = expected[0][j] = r;
+          actual[1][j] = expected[1][j] = g;
+          actual[2][j] = expected[2][j] = j % 256;
+        }
+        effect.apply(actual[0], actual[1], actual[2], length);
+        new ScalarColorMatrix().apply(values, expected[0], expected[1], expected[2], length);
+        for (int h = 0; h < 3; h++) {
+          assertArrayEquals(r + ", " + g, expected[h], actual[h]);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testColorMatrixBackendMatchesScalar() {
+    testBackendMatchesScalar(new double[][]{
+        {0.2126, 0.7152, 0.0722}, {0.2126, 0.7152, 0.0722}, {0.2126, 0.7152, 0.0722}});
+    testBackendMatchesScalar(new double[][]{
+        {0.393, 0.769, 0.189}, {0.349, 0.686, 0.168}, {0.272, 0.534, 0.131}});
+    testBackendMatchesScalar(new double[][]{{-0.5, 1.5, 0.25}, {1, 0, 0}, {0.3, -0.3, 2}});
+  }
+
+  @Test
+  public void testColorTablesMatchFixedPoint() {
+    ColorMatrix effect = new ColorMatrix(new double[][]{
+        {0.393, 0.769, 0.189}, {-0.5, 1.5, 0.25}, {0.3, -0.3, 2}});
+    int[][] actual = new int[3][256];
+    int[][] expected = new int[3][256];
+    for (int r = 0; r < 256; r++) {
+      for (int g = 0; g < 256; g++) {
+        for (int j = 0; j < 256; j++) {
+          actual[0][j] = expected[0][j] = r;
+          actual[1][j] = expected[1][j] = g;
+          actual[2][j] = expected[2][j] = j;
+        }
+        effect.applyTables(actual[0], actual[1], actual[2], 256);
+        effect.applyFixedPoint(expected[0], expected[1], expected[2], 256);
+        for (int h = 0; h < 3; h++) {
+          assertArrayEquals(r + ", " + g, expected[h], actual[h]);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testFixedPointFiltersAreExact() {
+    for (Consumer<Image> filter : List.<Consumer<Image>>of(Image::blur, Image::sharpen)) {
+      Image expected = makeImage(45, 29);
+      Image actual = makeImage(45, 29);
+      actual.setFixedPoint(true);
+      filter.accept(expected);
+      filter.accept(actual);
+      assertSamePixels(expected, actual);
+    }
+  }
+
+  @Test
+  public void testFixedPointSepiaIsWithinOne() {
+    ColorMatrix sepia = new ColorMatrix(new double[][]{
+        {0.393, 0.769, 0.189}, {0.349, 0.686, 0.168}, {0.272, 0.534, 0.131}});
+    int[][] expected = new int[3][256];
+    int[][] actual = new int[3][256];
+    for (int r = 0; r < 256; r++) {
+      for (int g = 0; g < 256; g++) {
+        for (int b = 0; b < 256; b++) {
+          actual[0][b] = expected[0][b] = r;
+          actual[1][b] = expected[1][b] = g;
+          actual[2][b] = expected[2][b] = b;
+        }
+        sepia.apply(expected[0], expected[1], expected[2], 256);
+        sepia.applyFixedPoint(actual[0], actual[1], actual[2], 256);
+        for (int h = 0; h < 3; h++) {
+          for (int b = 0; b < 256; b++) {
+            assertEquals(expected[h][b], actual[h][b], 1);
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testBlurOfFlatImageKeepsInside() {
+    int[] data = new int[25];
+    Arrays.fill(data, 0x808080);
+    Image img = new Image(data, 5, 5);
+    img.blur();
+    assertEquals(0x808080, img.getData().getRGB(2, 2));
+    // the corners only see 9/16 of the kernel.
+    assertEquals(0x484848, img.getData().getRGB(0, 0));
+  }
+
+  @Test
+  public void testRepeatedFiltersReusePooledRasters() {
+    Image img = makeImage(40, 30);
+    img.blur();
+    IRaster first = img.getData();
+    img.blur();
+    assertNotSame(first, img.getData());
+    img.blur();
+    assertSame(first, img.getData());
+  }
+
+  @Test
+  public void testSeedGridFindsTheClosestSeed() {
+    Random random = new Random(7);
+    // spread out seeds, seeds bunched in one corner, and seeds on a lattice (full of ties).
+    for (int layout = 0; layout < 3; layout++) {
+      int count = 60;
+      int[] rows = new int[count];
+      int[] cols = new int[count];
+      for (int k = 0; k < count; k++) {
+        rows[k] = layout == 0 ? random.nextInt(50) : layout == 1 ? random.nextInt(6) : k / 10 * 8;
+        cols[k] = layout == 0 ? random.nextInt(70) : layout == 1 ? random.nextInt(6) : k % 10 * 7;
+      }
+      SeedGrid grid = new SeedGrid(rows, cols, 50, 70);
+      for (int i = 0; i < 50; i++) {
+        for (int j = 0; j < 70; j++) {
+          int best = 0;
+          for (int k = 1; k < count; k++) {
+            int d = (rows[k] - i) * (rows[k] - i) + (cols[k] - j) * (cols[k] - j);
+            int bestD = (rows[best] - i) * (rows[best] - i) + (cols[best] - j) * (cols[best] - j);
+            if (d < bestD) {
+              best = k;
+            }
+          }
+          assertEquals(best, grid.nearest(i, j));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testJumpFloodIsAlmostExact() {
+    Random random = new Random(3);
+    int count = 300;
+    int[] rows = new int[count];
+    int[] cols = new int[count];
+    for (int k = 0; k < count; k++) {
+      rows[k] = random.nextInt(150);
+      cols[k] = random.nextInt(200);
+    }
+    SeedGrid grid = new SeedGrid(rows, cols, 150, 200);
+    int[] labels = JumpFlood.labels(rows, cols, 150, 200);
+    int wrong = 0;
+    for (int i = 0; i < 150; i++) {
+      for (int j = 0; j < 200; j++) {
+        int seed = labels[i * 200 + j];
+        wrong += seed == grid.nearest(i, j) ? 0 : 1;
+        // a seed always labels its own pixel.
+        assertTrue(seed >= 0 && seed < count);
+      }
+    }
+    for (int k = 0; k < count; k++) {
+      assertEquals(rows[k], rows[labels[rows[k] * 200 + cols[k]]]);
+      assertEquals(cols[k], cols[labels[rows[k] * 200 + cols[k]]]);
+    }
+    assertTrue(wrong < 150 * 200 / 200);
+  }
+
+  @Test
+  public void testJumpFloodMosaicPaintsAverages() {
+    int[] data = new int[60 * 40];
+    Arrays.fill(data, 0x336699);
+    Image img = new Image(data, 60, 40);
+    img.mosaic(30, new Random(1), true);
+    for (int i = 0; i < 40; i++) {
+      for (int j = 0; j < 60; j++) {
+        assertEquals(0x336699, img.getData().getRGB(i, j));
+      }
+    }
+  }
+
+  @Test
+  public void testMosaicWithOneSeedPaintsTheAverage() {
+    for (boolean jumpFlood : new boolean[]{false, true}) {
+      int[] data = new int[30 * 20];
+      // half black and half 0x0B15FF, so the averages round halves up.
+      for (int k = 0; k < data.length; k++) {
+        data[k] = k % 2 == 0 ? 0 : 0x0B15FF;
+      }
+      Image img = new Image(data, 30, 20);
+      img.mosaic(1, new Random(1), jumpFlood);
+      for (int i = 0; i < 20; i++) {
+        for (int j = 0; j < 30; j++) {
+          assertEquals(0x060B80, img.getData().getRGB(i, j));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testMosaicWithTheSameSeedIsTheSame() {
+    Image first = makeImage(80, 60);
+    Image second = makeImage(80, 60);
+    first.mosaic(200, 42);
+    second.mosaic(200, 42);
+    assertSamePixels(first, second);
+    testParallelMatchesSerial(img -> img.mosaic(500, 7));
+  }
+
+  @Test
+  public void testMosaicWithASeedOnEveryPixelChangesNothing() {
+    Image expected = makeImage(50, 40);
+    Image actual = makeImage(50, 40);
+    actual.mosaic(50 * 40, 3);
+    assertSamePixels(expected, actual);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMosaicWithMoreSeedsThanPixels() {
+    makeImage(5, 4).mosaic(21, 1);
+  }
+
+  @Test
+  public void testSuperpixelsFollowEdges() {
+    // two flat halves split off the grid of centers; no cell should end up across the edge.
+    int[] data = new int[90 * 60];
+    for (int k = 0; k < data.length; k++) {
+      data[k] = k % 90 < 37 ? 0xC02020 : 0x2040A0;
+    }
+    Image expected = new Image(data.clone(), 90, 60);
+    Image actual = new Image(data, 90, 60);
+    actual.superpixels(24, 10, 5);
+    assertSamePixels(expected, actual);
+    testParallelMatchesSerial(img -> img.superpixels(40, 5, 20));
+  }
+
+  @Test
+  public void testMosaicCacheMatchesAMosaicFromScratch() {
+    Image img = makeImage(130, 90);
+    MosaicCache cache = new MosaicCache(img.getData(), new Random(5));
+    for (int seeds : new int[]{40, 300, 301, 120, 7, 2000, 1}) {
+      cache.setCount(seeds);
+      Image actual = makeImage(130, 90);
+      cache.paint(actual.getData());
+
+      MosaicCache fresh = new MosaicCache(img.getData(), new Random(5));
+      fresh.setCount(seeds);
+      Image expected = makeImage(130, 90);
+      fresh.paint(expected.getData());
+      assertSamePixels(expected, actual);
+    }
+    assertTrue(cache.isSourceOf(img.getData()));
+    img.blur();
+    assertTrue(!cache.isSourceOf(img.getData()));
+  }
+}
@@ -0,0 +1,186 @@
+package model;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * A test class for the model.
+ */
+public class ModelImplTest {
+
+  private int[] pixels(IModel model) {
+    BufferedImage img = model.toBufferedImage();
+    return img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
+  }
+
+  @Test
+  public void testFusedPointOpsMatchSeparateOps() {
+    IModel separate = new ModelImpl();
+    separate.drawHorizontalRainbow(70, 40);
+    separate.grayscale();
+    pixels(separate);
+    separate.sepia();
+    pixels(separate);
+    separate.sepia();
+
+    IModel fused = new ModelImpl();
+    fused.drawHorizontalRainbow(70, 40);
+    fused.grayscale();
+    fused.sepia();
+    fused.sepia();
+
+    assertArrayEquals(pixels(separate), pixels(fused));
+  }
+
+  @Test
+  public void testFusedPointOpsAreOneStep() {
+    IModel model = new ModelImpl();
+    model.drawVerticalRainbow(30, 20);
+    int[] original = pixels(model);
+    model.sepia();
+    model.grayscale();
+    assertTrue(model.canUndo());
+    model.undo();
+    assertArrayEquals(original, pixels(model));
+    assertFalse(model.canUndo());
+  }
+
+  @Test
+  public void testLazyMatchesEager() {
+    IModel eager = new ModelImpl();
+    eager.drawHorizontalRainbow(50, 30);
+    eager.grayscale();
+    eager.blur();
+    eager.sepia();
+    eager.applyKernel(1, 3, new double[]{0.25, 0.5, 0.25}, BorderMode.CLAMP);
+
+    IModel lazy = new ModelImpl();
+    lazy.setLazy(true);
+    lazy.drawHorizontalRainbow(50, 30);
+    lazy.grayscale();
+    lazy.blur();
+    lazy.sepia();
+    lazy.applyKernel(1, 3, new double[]{0.25, 0.5, 0.25}, BorderMode.CLAMP);
+
+    assertArrayEquals(pixels(eager), pixels(lazy));
+  }
+
+  @Test
+  public void testLazyPlanIsOneStep() {
+    IModel model = new ModelImpl();
+    model.drawVerticalRainbow(30, 20);
+    int[] original = pixels(model);
+    model.setLazy(true);
+    model.sharpen();
+    model.sepia();
+    model.blur(3);
+    model.flush();
+    model.undo();
+    assertArrayEquals(original, pixels(model));
+  }
+
+  @Test
+  public void testCanUndoAndRedoSeeAWaitingPlan() {
+    IModel model = new ModelImpl();
+    model.drawVerticalRainbow(30, 20);
+    int[] original = pixels(model);
+    model.grayscale();
+    model.undo();
+    assertTrue(model.canRedo());
+    assertFalse(model.canUndo());
+
+    model.setLazy(true);
+    model.sepia();
+    assertTrue(model.canUndo());
+    assertFalse(model.canRedo());
+    model.undo();
+    assertArrayEquals(original, pixels(model));
+  }
+
+  @Test
+  public void testLazyPlanIsDroppedByGenerate() {
+    IModel model = new ModelImpl();
+    model.setLazy(true);
+    model.drawVerticalRainbow(30, 20);
+    model.blur(5);
+    model.drawVerticalRainbow(30, 20);
+    int[] generated = pixels(model);
+
+    IModel expected = new ModelImpl();
+    expected.drawVerticalRainbow(30, 20);
+    assertArrayEquals(pixels(expected), generated);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testLazyChecksArgumentsRightAway() {
+    IModel model = new ModelImpl();
+    model.setLazy(true);
+    model.drawVerticalRainbow(30, 20);
+    model.applyKernel(2, 2, new double[]{1, 2, 3}, BorderMode.ZERO);
+  }
+
+  @Test
+  public void testComposedToneOpsMatchSeparateOps() {
+    IModel separate = new ModelImpl();
+    separate.drawHorizontalRainbow(70, 40);
+    separate.brightness(-30);
+    pixels(separate);
+    separate.contrast(1.7);
+    pixels(separate);
+    separate.gamma(0.6);
+    pixels(separate);
+    separate.levels(20, 230, 1.3);
+    pixels(separate);
+    separate.curves(new int[]{0, 100, 255}, new int[]{10, 60, 250});
+
+    IModel composed = new ModelImpl();
+    composed.drawHorizontalRainbow(70, 40);
+    composed.brightness(-30);
+    composed.contrast(1.7);
+    composed.gamma(0.6);
+    composed.levels(20, 230, 1.3);
+    composed.curves(new int[]{0, 100, 255}, new int[]{10, 60, 250});
+
+    assertArrayEquals(pixels(separate), pixels(composed));
+  }
+
+  @Test
+  public void testToneTables() {
+    LookupTable identity = LookupTable.curves(new int[]{0, 255}, new int[]{0, 255});
+    LookupTable levels = LookupTable.levels(50, 150, 1);
+    for (int v = 0; v < 256; v++) {
+      assertTrue(identity.get(1, v) == v);
+      assertTrue(LookupTable.gamma(1).get(0, v) == v);
+      assertTrue(LookupTable.contrast(1).get(2, v) == v);
+      assertTrue(LookupTable.brightness(0).get(0, v) == v);
+      assertTrue(levels.get(0, v) == Math.round(255 * Math.min(Math.max(v - 50, 0), 100) / 100.0));
+    }
+    assertTrue(LookupTable.brightness(100).get(0, 200) == 255);
+    assertTrue(LookupTable.curves(new int[]{100}, new int[]{42}).get(2, 7) == 42);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testCurveInputsMustIncrease() {
+    new ModelImpl().curves(new int[]{10, 10}, new int[]{0, 255});
+  }
+
+  @Test
+  public void testMosaicAfterUndoReusesTheSeeds() {
+    IModel model = new ModelImpl();
+    model.drawHorizontalRainbow(80, 50);
+    int[] original = pixels(model);
+    model.mosaic(60);
+    int[] first = pixels(model);
+    model.undo();
+    assertArrayEquals(original, pixels(model));
+    model.mosaic(200);
+    model.undo();
+    model.mosaic(60);
+    assertArrayEquals(first, pixels(model));
+  }
+}
@@ -0,0 +1,175 @@
+package model;
+
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * A test class for the different raster storage modes.
+ */
+public class RasterTest {
+
+  private void testSetAndGet(IRaster raster) {
+    raster.set(1, 2, 0, 300);
+    raster.set(1, 2, 1, -4);
+    raster.set(1, 2, 2, 77);
+    assertEquals(255, raster.get(1, 2, 0));
+    assertEquals(0, raster.get(1, 2, 1));
+    assertEquals(77, raster.get(1, 2, 2));
+    assertEquals(0xFF004D, raster.getRGB(1, 2));
+
+    raster.setRGB(0, 0, 0x123456);
+    assertEquals(0x12, raster.get(0, 0, 0));
+    assertEquals(0x34, raster.get(0, 0, 1));
+    assertEquals(0x56, raster.get(0, 0, 2));
+  }
+
+  private void testRows(IRaster raster) {
+    int[] red = {1, 2, 300, 4};
+    int[] green = {5, -6, 7, 8};
+    int[] blue = {9, 10, 11, 255};
+    raster.writeRow(2, red, green, blue);
+
+    int[] row = new int[4];
+    raster.readRow(2, 0, row);
+    assertArrayEquals(new int[]{1, 2, 255, 4}, row);
+    raster.readRow(2, 1, row);
+    assertArrayEquals(new int[]{5, 0, 7, 8}, row);
+    raster.readRowRGB(2, row);
+    assertArrayEquals(new int[]{0x010509, 0x02000A, 0xFF070B, 0x0408FF}, row);
+  }
+
+  private void testCopy(IRaster raster) {
+    raster.setRGB(2, 3, 0xABCDEF);
+    IRaster copy = raster.copy();
+    raster.setRGB(2, 3, 0);
+    assertEquals(0xABCDEF, copy.getRGB(2, 3));
+    assertEquals(raster.getMode(), copy.getMode());
+  }
+
+  @Test
+  public void testPackedSetAndGet() {
+    testSetAndGet(new PackedRaster(4, 3));
+  }
+
+  @Test
+  public void testPlanarSetAndGet() {
+    testSetAndGet(new PlanarRaster(4, 3));
+  }
+
+  @Test
+  public void testPackedRows() {
+    testRows(new PackedRaster(4, 3));
+  }
+
+  @Test
+  public void testPlanarRows() {
+    testRows(new PlanarRaster(4, 3));
+  }
+
+  @Test
+  public void testPackedCopy() {
+    testCopy(new PackedRaster(4, 3));
+  }
+
+  @Test
+  public void testPlanarCopy() {
+    testCopy(new PlanarRaster(4, 3));
+  }
+
+  @Test
+  public void testMappedSetAndGet() {
+    testSetAndGet(new MappedRaster(4, 3));
+  }
+
+  @Test
+  public void testMappedRows() {
+    testRows(new MappedRaster(4, 3));
+  }
+
+  @Test
+  public void testMappedCopy() {
+    testCopy(new MappedRaster(4, 3));
+  }
+
+  @Test
+  public void testMappedRowsAcrossChunks() {
+    // two rows of 5 pixels per chunk, so 7 rows take four chunks, the last one half full.
+    IRaster raster = new MappedRaster(5, 7, 2 * 3 * 5);
+    int[] row = new int[5];
+    for (int i = 0; i < 7; i++) {
+      for (int j = 0; j < 5; j++) {
+        row[j] = i * 0x010203 + j * 0x100000;
+      }
+      raster.writeRowRGB(i, row);
+    }
+    raster.set(2, 4, 1, 200);
+    raster.setRGB(5, 0, 0xFEDCBA);
+
+    IRaster copy = raster.copy();
+    for (int i = 0; i < 7; i++) {
+      for (IRaster r : new IRaster[]{raster, copy}) {
+        r.readRowRGB(i, row);
+        for (int j = 0; j < 5; j++) {
+          int expected = i * 0x010203 + j * 0x100000;
+          if (i == 2 && j == 4) {
+            expected = (expected & 0xFF00FF) | (200 << 8);
+          } else if (i == 5 && j == 0) {
+            expected = 0xFEDCBA;
+          }
+          assertEquals(expected, row[j]);
+          assertEquals(expected, r.getRGB(i, j));
+        }
+      }
+    }
+
+    int[] red = {1, 2, 3, 4, 5};
+    int[] green = {6, 7, 8, 9, 10};
+    int[] blue = {11, 12, 13, 14, 15};
+    copy.writeRow(6, red, green, blue);
+    copy.readRow(6, 2, row);
+    assertArrayEquals(blue, row);
+    raster.readRow(6, 0, row);
+    assertEquals(6, row[0]);
+  }
+
+  @Test
+  public void testMappedModelMatchesPacked() throws IOException {
+    File source = File.createTempFile("raster-test", ".png");
+    File packedOut = File.createTempFile("raster-test-packed", ".png");
+    File mappedOut = File.createTempFile("raster-test-mapped", ".png");
+    try {
+      IModel generator = new ModelImpl();
+      generator.drawHorizontalRainbow(37, 23);
+      generator.save(source.getPath());
+
+      IModel packed = new ModelImpl(StorageMode.PACKED);
+      packed.load(source.getPath());
+      packed.blur();
+      packed.save(packedOut.getPath());
+
+      IModel mapped = new ModelImpl(StorageMode.MAPPED);
+      mapped.load(source.getPath());
+      mapped.blur();
+      mapped.save(mappedOut.getPath());
+
+      assertArrayEquals(pixels(ImageIO.read(packedOut)), pixels(ImageIO.read(mappedOut)));
+      assertArrayEquals(pixels(packed.toBufferedImage()), pixels(mapped.toBufferedImage()));
+    } finally {
+      source.delete();
+      packedOut.delete();
+      mappedOut.delete();
+    }
+  }
+
+  private int[] pixels(BufferedImage img) {
+    return img.getRGB(0, 0, img.getWidth(), img.getHeight(), null, 0, img.getWidth());
+  }
+}